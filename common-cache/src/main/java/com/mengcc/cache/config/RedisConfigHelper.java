@@ -6,16 +6,23 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import io.lettuce.core.ReadFrom;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.Collection;
+
 
 /**
  * @author zhouzq
@@ -70,6 +77,27 @@ public class RedisConfigHelper {
         return redisTemplate;
     }
 
+    /**
+     * 创建redis集群的连接工厂, 配合{@link com.mengcc.cache.storage.impl.ClusterRedisCacheStorage}使用,
+     * 作为bean注册后由spring完成初始化
+     * @param nodes           集群节点, 格式为: host:port
+     * @param password        密码, 没有则传{@code null}
+     * @param readFromReplica 是否优先从从节点读取, 从节点不可用时再读主节点; 从节点的数据可能略有延迟
+     * @return
+     */
+    public static LettuceConnectionFactory newClusterConnectionFactory(Collection<String> nodes, String password,
+                                                                       boolean readFromReplica) {
+        RedisClusterConfiguration clusterConfiguration = new RedisClusterConfiguration(nodes);
+        if (StringUtils.isNotBlank(password)) {
+            clusterConfiguration.setPassword(RedisPassword.of(password));
+        }
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder();
+        if (readFromReplica) {
+            builder.readFrom(ReadFrom.SLAVE_PREFERRED);
+        }
+        return new LettuceConnectionFactory(clusterConfiguration, builder.build());
+    }
+
     /**
      * 自定义json序列化配置的json序列化类
      * @return
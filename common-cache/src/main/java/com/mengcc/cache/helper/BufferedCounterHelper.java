@@ -0,0 +1,209 @@
+package com.mengcc.cache.helper;
+
+import com.mengcc.cache.storage.CacheStorage;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 写后缓冲的计数器
+ *
+ * <p>高频的计数(如: 页面浏览量, 接口计量)先在本地按key累加到{@link LongAdder}, 再由定时任务或数量阈值触发,
+ * 通过{@link CacheStorage#incrementAll(Map)}批量刷新到缓存, 将每次计数一次网络往返合并为每批一次。</p>
+ * <p>缓存中的值最多落后本地计数一个刷新间隔, 调用{@link #close()}或JVM退出时会刷新剩余的增量。</p>
+ */
+public class BufferedCounterHelper implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BufferedCounterHelper.class);
+
+    /** 默认的刷新间隔(毫秒) */
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000L;
+
+    /** 默认触发提前刷新的待刷新key数量 */
+    private static final int DEFAULT_MAX_PENDING_KEYS = 1000;
+
+    private final CacheStorage<?> storage;
+
+    private final int maxPendingKeys;
+
+    /** 待刷新的增量, key无需前缀 */
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 上一次刷新时已空闲而被移出的计数器, 下一次刷新时再检查一遍,
+     * 以免移除时恰好有线程拿着旧的计数器累加而丢失增量
+     */
+    private Map<String, LongAdder> retired = new HashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    /** JVM退出时刷新剩余增量的钩子, 关闭时移除 */
+    private final Thread shutdownHook;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private volatile boolean closed = false;
+
+    public BufferedCounterHelper(CacheStorage<?> storage) {
+        this(storage, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_MAX_PENDING_KEYS);
+    }
+
+    /**
+     * @param storage        计数器最终写入的缓存
+     * @param flushInterval  定时刷新的间隔, 即缓存值最大的滞后时间
+     * @param unit           flushInterval的单位
+     * @param maxPendingKeys 待刷新的key数量达到此值时提前刷新
+     */
+    public BufferedCounterHelper(CacheStorage<?> storage, long flushInterval, TimeUnit unit, int maxPendingKeys) {
+        if (flushInterval <= 0 || maxPendingKeys <= 0) {
+            throw new IllegalArgumentException("flushInterval and maxPendingKeys must be positive");
+        }
+        this.storage = storage;
+        this.maxPendingKeys = maxPendingKeys;
+        this.executor = new ScheduledThreadPoolExecutor(1,
+                new BasicThreadFactory.Builder().namingPattern("cache-counter-flush-thread-%d").daemon(true).build());
+        this.executor.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, unit);
+        this.shutdownHook = new Thread(this::close, "cache-counter-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 计数器加1
+     * @param key 无需前缀
+     */
+    public void increment(String key) {
+        increment(key, 1L);
+    }
+
+    /**
+     * 在本地累加增量, 等待下一次刷新写入缓存
+     * @param key   无需前缀
+     * @param delta 增量
+     */
+    public void increment(String key, long delta) {
+        if (key == null || delta == 0) {
+            return;
+        }
+        LongAdder adder = counters.get(key);
+        if (adder == null) {
+            adder = counters.computeIfAbsent(key, k -> new LongAdder());
+            if (counters.size() >= maxPendingKeys) {
+                scheduleFlush();
+            }
+        }
+        adder.add(delta);
+        if (closed) {
+            // 已关闭后不再有定时刷新, 直接同步写入
+            flush();
+        }
+    }
+
+    /**
+     * 获取本地尚未刷新到缓存的增量
+     * @param key 无需前缀
+     * @return
+     */
+    public long pending(String key) {
+        LongAdder adder = counters.get(key);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /**
+     * 将本地累加的增量批量写入缓存
+     * @return 写入后各key在缓存中的值
+     */
+    public synchronized Map<String, Long> flush() {
+        Map<String, Long> deltas = new HashMap<>();
+        Map<String, LongAdder> taken = new HashMap<>();
+        retired.forEach((key, adder) -> drain(key, adder, deltas, taken));
+        retired = new HashMap<>();
+
+        counters.forEach((key, adder) -> {
+            if (!drain(key, adder, deltas, taken) && counters.remove(key, adder)) {
+                retired.put(key, adder);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        try {
+            return storage.incrementAll(deltas);
+        } catch (RuntimeException e) {
+            // 写入失败时把增量还回去, 等待下一次刷新
+            taken.forEach((key, adder) -> counters.computeIfAbsent(key, k -> new LongAdder()).add(deltas.get(key)));
+            throw e;
+        }
+    }
+
+    /**
+     * 停止定时刷新, 并将剩余的增量写入缓存
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM正在退出, 由钩子调用的close()
+        }
+        executor.shutdown();
+        flushQuietly();
+    }
+
+    /**
+     * 取出计数器当前的增量, 只减去已读取的部分, 读取期间并发累加的增量留给下一次刷新
+     * @return 有增量则返回{@code true}
+     */
+    private boolean drain(String key, LongAdder adder, Map<String, Long> deltas, Map<String, LongAdder> taken) {
+        long sum = adder.sum();
+        if (sum == 0) {
+            return false;
+        }
+        adder.add(-sum);
+        deltas.merge(key, sum, Long::sum);
+        taken.put(key, adder);
+        return true;
+    }
+
+    private void scheduleFlush() {
+        if (!closed && flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    flushScheduled.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                // 并发关闭时定时任务已停止, 剩余增量由close()刷新
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            Map<String, Long> result = flush();
+            if (log.isDebugEnabled() && !result.isEmpty()) {
+                log.debug(">> 刷新了{}个计数器到缓存", result.size());
+            }
+        } catch (Exception e) {
+            log.error(">> 刷新计数器到缓存失败: {}", e.getMessage(), e);
+        }
+    }
+}
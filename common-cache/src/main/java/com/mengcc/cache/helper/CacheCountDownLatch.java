@@ -0,0 +1,117 @@
+package com.mengcc.cache.helper;
+
+import com.mengcc.cache.storage.CacheStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 基于缓存的分布式倒计数器
+ *
+ * <p>由一个节点通过{@link #trySetCount(int)}设置计数, 各节点完成任务后调用{@link #countDown()},
+ * 等待方通过{@link #await(long, TimeUnit)}轮询计数直到归零。计数带有存活时间, 异常退出的任务不会让计数永久残留;
+ * 归零后计数器保留为0直到存活时间结束, 以区分已归零和未设置或已过期, 期间不能重新设置计数。
+ * 使用{@link com.mengcc.cache.storage.impl.LocalMemoryCacheStorage}时只在本进程内生效, 可用于测试。</p>
+ */
+public class CacheCountDownLatch {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheCountDownLatch.class);
+
+    /** 计数器的key */
+    private static final String LATCH_KEY = "latch:";
+
+    /** 等待时的最短和最长轮询间隔(毫秒) */
+    private static final long MIN_POLL_INTERVAL = 50L;
+    private static final long MAX_POLL_INTERVAL = 1000L;
+
+    protected final CacheStorage<Object> storage;
+
+    private final String key;
+    private final long expireMillis;
+
+    /**
+     * @param storage
+     * @param name    计数器名称
+     * @param expire  计数的存活时间, 应长于整个任务的最长执行时间
+     * @param unit
+     */
+    public CacheCountDownLatch(CacheStorage<Object> storage, String name, long expire, TimeUnit unit) {
+        if (expire <= 0) {
+            throw new IllegalArgumentException("expire must be positive");
+        }
+        this.storage = storage;
+        this.key = LATCH_KEY + name;
+        this.expireMillis = unit.toMillis(expire);
+    }
+
+    /**
+     * 设置计数, 仅当计数器不存在时才设置成功
+     * @param count
+     * @return 设置成功则返回{@code true}
+     */
+    public boolean trySetCount(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        // 字符串redis缓存只能保存字符串, 其他缓存保存数值以便原子自减
+        Object value = storage.isStringRedis() ? String.valueOf(count) : Integer.valueOf(count);
+        return storage.setIfAbsent(key, value, expireMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 计数减1
+     * @return 减少后的计数
+     */
+    public long countDown() {
+        // 原子地自减并在归零后保留为0, 计数器不存在时不会产生没有存活时间的负数
+        Long count = storage.countDown(key);
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * 当前的计数
+     * @return 计数器不存在(已过期或未设置)时返回0
+     */
+    public long getCount() {
+        Long count = readCount();
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * 等待计数归零
+     * @param timeout
+     * @param unit
+     * @return 计数归零则返回{@code true}; 等待超时返回{@code false}, 计数器一直未设置或已过期也视为未归零
+     * @throws InterruptedException
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long interval = MIN_POLL_INTERVAL;
+        Long count;
+        while ((count = readCount()) == null || count > 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                log.warn(">> 等待计数器{}归零超时", key);
+                return false;
+            }
+            Thread.sleep(Math.min(interval, remaining));
+            interval = Math.min(interval * 2, MAX_POLL_INTERVAL);
+        }
+        return true;
+    }
+
+    /**
+     * 读取计数
+     * @return 计数器不存在(已过期或未设置)时返回{@code null}
+     */
+    private Long readCount() {
+        Object count = storage.get(key);
+        if (count == null) {
+            return null;
+        }
+        return count instanceof Number ? ((Number) count).longValue() : Long.parseLong(count.toString());
+    }
+}
@@ -0,0 +1,56 @@
+package com.mengcc.cache.helper;
+
+import com.mengcc.cache.storage.CacheStorage;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 带版本号的缓存命名空间
+ *
+ * <p>命名空间下的key都嵌入当前版本号, 形如: {@code user:v3:123}。
+ * 调用{@link #invalidate(String)}将版本号加1后, 旧版本的key不会再被访问, 相当于O(1)地让整个命名空间失效,
+ * 旧的缓存依靠自身的失效时间回收, 因此命名空间下的缓存应当设置失效时间。</p>
+ */
+public class CacheNamespaceHelper {
+
+    /** 版本号key的前缀 */
+    private static final String VERSION_KEY_PREFIX = "ns-version:";
+
+    protected final CacheStorage<?> storage;
+
+    public CacheNamespaceHelper(CacheStorage<?> storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * 生成命名空间下当前版本的key
+     * @param namespace 命名空间
+     * @param key 命名空间内的key
+     * @return 无需前缀的缓存key, 可直接用于{@link CacheStorage}的各个操作
+     */
+    public String key(String namespace, String key) {
+        return namespace + ":v" + currentVersion(namespace) + ":" + key;
+    }
+
+    /**
+     * 获取命名空间的当前版本号
+     * @param namespace
+     * @return 从未失效过的命名空间版本号为0
+     */
+    public long currentVersion(String namespace) {
+        Object version = storage.get(VERSION_KEY_PREFIX + namespace);
+        if (version == null) {
+            return 0L;
+        }
+        return version instanceof Number ? ((Number) version).longValue() : Long.parseLong(version.toString());
+    }
+
+    /**
+     * 使整个命名空间失效
+     * @param namespace
+     * @return 新的版本号
+     */
+    public long invalidate(String namespace) {
+        return storage.increment(VERSION_KEY_PREFIX + namespace, 1);
+    }
+}
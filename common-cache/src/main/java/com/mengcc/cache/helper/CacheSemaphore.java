@@ -0,0 +1,113 @@
+package com.mengcc.cache.helper;
+
+import com.mengcc.cache.storage.CacheStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 基于缓存的分布式信号量
+ *
+ * <p>限制集群内同时执行某类操作的数量, 如: 同时调用合作方接口的请求不超过20个。
+ * 每个许可带有租约, 持有者崩溃或忘记释放时许可在租约到期后自动归还; 执行时间较长的操作应在租约到期前调用{@link #renew(String)}。
+ * 使用redis缓存时由lua脚本原子地申请许可, 使用{@link com.mengcc.cache.storage.impl.LocalMemoryCacheStorage}时只在本进程内生效, 可用于测试。</p>
+ */
+public class CacheSemaphore {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheSemaphore.class);
+
+    /** 信号量的key */
+    private static final String SEMAPHORE_KEY = "semaphore:";
+
+    /** 等待许可时的最短和最长重试间隔(毫秒) */
+    private static final long MIN_RETRY_INTERVAL = 50L;
+    private static final long MAX_RETRY_INTERVAL = 1000L;
+
+    protected final CacheStorage storage;
+
+    private final String key;
+    private final int permits;
+    private final long leaseMillis;
+
+    /**
+     * @param storage
+     * @param name      信号量名称
+     * @param permits   许可总数
+     * @param leaseTime 每个许可的租约时长
+     * @param unit
+     */
+    public CacheSemaphore(CacheStorage storage, String name, int permits, long leaseTime, TimeUnit unit) {
+        if (permits <= 0 || leaseTime <= 0) {
+            throw new IllegalArgumentException("permits and leaseTime must be positive");
+        }
+        this.storage = storage;
+        this.key = SEMAPHORE_KEY + name;
+        this.permits = permits;
+        this.leaseMillis = unit.toMillis(leaseTime);
+    }
+
+    /**
+     * 尝试申请一个许可, 不等待
+     * @return 租约标识, 用于续期和释放; 没有可用的许可时返回{@code null}
+     */
+    public String tryAcquire() {
+        String leaseId = UUID.randomUUID().toString();
+        return storage.acquirePermit(key, leaseId, permits, leaseMillis, TimeUnit.MILLISECONDS) ? leaseId : null;
+    }
+
+    /**
+     * 申请一个许可, 没有可用的许可时最多等待指定的时长
+     * @param waitTime
+     * @param unit
+     * @return 租约标识, 用于续期和释放; 等待超时返回{@code null}
+     * @throws InterruptedException
+     */
+    public String tryAcquire(long waitTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        long interval = MIN_RETRY_INTERVAL;
+        while (true) {
+            String leaseId = tryAcquire();
+            if (leaseId != null) {
+                return leaseId;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug(">> 等待信号量{}的许可超时", key);
+                }
+                return null;
+            }
+            Thread.sleep(Math.min(interval, remaining));
+            interval = Math.min(interval * 2, MAX_RETRY_INTERVAL);
+        }
+    }
+
+    /**
+     * 续期许可, 租约从当前时间起重新计算
+     * @param leaseId 申请许可时返回的租约标识
+     * @return 续期成功则返回{@code true}; 租约已过期时会重新申请许可, 没有可用的许可则返回{@code false}
+     */
+    public boolean renew(String leaseId) {
+        return storage.acquirePermit(key, leaseId, permits, leaseMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 释放许可
+     * @param leaseId 申请许可时返回的租约标识
+     * @return 租约已过期时返回{@code false}
+     */
+    public boolean release(String leaseId) {
+        if (leaseId == null) {
+            return false;
+        }
+        boolean released = storage.releasePermit(key, leaseId);
+        if (!released) {
+            log.warn(">> 信号量{}的许可已过期, 租约: {}", key, leaseId);
+        }
+        return released;
+    }
+}
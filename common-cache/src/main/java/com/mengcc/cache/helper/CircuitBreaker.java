@@ -0,0 +1,220 @@
+package com.mengcc.cache.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 熔断器
+ *
+ * <p>基于最近N次调用的滑动窗口统计失败率和慢调用率, 任一比例超过阈值即熔断(OPEN), 熔断期间的调用直接拒绝。
+ * 熔断持续指定时长后进入半开(HALF_OPEN)状态, 放行少量探测调用, 探测全部成功则恢复(CLOSED), 否则重新熔断。</p>
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        /** 正常放行 */
+        CLOSED,
+        /** 熔断, 拒绝所有调用 */
+        OPEN,
+        /** 半开, 放行少量探测调用 */
+        HALF_OPEN
+    }
+
+    private final String name;
+
+    /** 滑动窗口的大小(调用次数) */
+    private final int windowSize;
+
+    /** 窗口内至少有多少次调用才开始计算比例 */
+    private final int minimumCalls;
+
+    /** 失败率阈值(百分比) */
+    private final int failureRateThreshold;
+
+    /** 超过此时长的调用视为慢调用(纳秒) */
+    private final long slowCallDurationNanos;
+
+    /** 慢调用率阈值(百分比) */
+    private final int slowCallRateThreshold;
+
+    /** 熔断持续的时长(纳秒) */
+    private final long openDurationNanos;
+
+    /** 半开状态下的探测调用次数 */
+    private final int halfOpenProbes;
+
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private int windowIndex;
+    private int windowCount;
+    private int failureCount;
+    private int slowCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probesSucceeded;
+
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 使用默认配置: 最近100次调用中至少20次, 失败率或超过1秒的慢调用率达到50%即熔断, 熔断30秒后用5次调用探测
+     * @param name 熔断器名称, 用于日志
+     */
+    public CircuitBreaker(String name) {
+        this(name, 100, 20, 50, 1000L, 50, 30000L, TimeUnit.MILLISECONDS, 5);
+    }
+
+    /**
+     * @param name                  熔断器名称, 用于日志
+     * @param windowSize            滑动窗口的大小(调用次数)
+     * @param minimumCalls          窗口内至少有多少次调用才开始计算比例
+     * @param failureRateThreshold  失败率阈值(百分比)
+     * @param slowCallDuration      超过此时长的调用视为慢调用
+     * @param slowCallRateThreshold 慢调用率阈值(百分比)
+     * @param openDuration          熔断持续的时长
+     * @param unit                  slowCallDuration和openDuration的单位
+     * @param halfOpenProbes        半开状态下的探测调用次数
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                          long slowCallDuration, int slowCallRateThreshold, long openDuration, TimeUnit unit,
+                          int halfOpenProbes) {
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize || halfOpenProbes <= 0) {
+            throw new IllegalArgumentException("invalid circuit breaker window settings");
+        }
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallDurationNanos = unit.toNanos(slowCallDuration);
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationNanos = unit.toNanos(openDuration);
+        this.halfOpenProbes = halfOpenProbes;
+        this.failedCalls = new boolean[windowSize];
+        this.slowCalls = new boolean[windowSize];
+    }
+
+    /**
+     * 注册状态变化的监听器, 监听器在锁外、触发状态变化的线程中调用
+     * @param listener
+     */
+    public void addListener(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 申请执行一次调用
+     * @return 允许调用则返回{@code true}, 调用结束后必须调用{@link #onSuccess(long)}或{@link #onError(long)}
+     */
+    public boolean tryAcquire() {
+        State changed = null;
+        boolean permitted;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                changed = transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.CLOSED) {
+                permitted = true;
+            } else if (state == State.HALF_OPEN && probesInFlight + probesSucceeded < halfOpenProbes) {
+                probesInFlight++;
+                permitted = true;
+            } else {
+                permitted = false;
+            }
+        }
+        notifyListeners(changed);
+        return permitted;
+    }
+
+    /**
+     * 记录一次成功的调用
+     * @param durationNanos 调用耗时(纳秒)
+     */
+    public void onSuccess(long durationNanos) {
+        record(false, durationNanos);
+    }
+
+    /**
+     * 记录一次失败的调用
+     * @param durationNanos 调用耗时(纳秒)
+     */
+    public void onError(long durationNanos) {
+        record(true, durationNanos);
+    }
+
+    private void record(boolean failed, long durationNanos) {
+        boolean slow = durationNanos >= slowCallDurationNanos;
+        State changed = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+                if (failed || slow) {
+                    changed = transitionTo(State.OPEN);
+                } else if (++probesSucceeded >= halfOpenProbes) {
+                    changed = transitionTo(State.CLOSED);
+                }
+            } else if (state == State.CLOSED) {
+                if (windowCount == windowSize) {
+                    failureCount -= failedCalls[windowIndex] ? 1 : 0;
+                    slowCount -= slowCalls[windowIndex] ? 1 : 0;
+                } else {
+                    windowCount++;
+                }
+                failedCalls[windowIndex] = failed;
+                slowCalls[windowIndex] = slow;
+                failureCount += failed ? 1 : 0;
+                slowCount += slow ? 1 : 0;
+                windowIndex = (windowIndex + 1) % windowSize;
+
+                if (windowCount >= minimumCalls && (failureCount * 100 >= failureRateThreshold * windowCount
+                        || slowCount * 100 >= slowCallRateThreshold * windowCount)) {
+                    changed = transitionTo(State.OPEN);
+                }
+            }
+        }
+        notifyListeners(changed);
+    }
+
+    private State transitionTo(State newState) {
+        log.warn(">> 熔断器[{}]状态变化: {} -> {}, 失败{}次, 慢调用{}次, 共{}次",
+                name, state, newState, failureCount, slowCount, windowCount);
+        state = newState;
+        probesInFlight = 0;
+        probesSucceeded = 0;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (newState == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            failureCount = 0;
+            slowCount = 0;
+        }
+        return newState;
+    }
+
+    private void notifyListeners(State changed) {
+        if (changed == null) {
+            return;
+        }
+        for (Consumer<State> listener : listeners) {
+            try {
+                listener.accept(changed);
+            } catch (Exception e) {
+                log.error(">> 熔断器[{}]状态监听器执行出错", name, e);
+            }
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.mengcc.cache.helper;
 
 import com.mengcc.cache.storage.CacheStorage;
-import com.mengcc.core.context.ThreadContext;
+import com.mengcc.core.context.ContextKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -31,6 +33,9 @@ public class RedisLockHelper {
     /** 互斥锁的默认值 */
     private static final String MUTEX_VALUE = "1";
 
+    /** 当前线程各个缓存key的重试次数, 不传递到其他线程 */
+    private static final ContextKey<Map<String, Integer>> RETRY_COUNTS = ContextKey.local("cache-retry");
+
     protected final CacheStorage storage;
 
     public RedisLockHelper(CacheStorage storage) {
@@ -44,11 +49,8 @@ public class RedisLockHelper {
      * @return
      */
     public boolean lock(String key) {
-        boolean flag = storage.setIfAbsent(NXKEY + key, MUTEX_VALUE);
-        // 若获取成功，则设置一个失效时间，防止因为意外导致分布式锁一直锁定
-        if (flag && MUTEX_EXPIRE_SEC > 0) {
-            storage.expire(NXKEY + key, MUTEX_EXPIRE_SEC, TimeUnit.SECONDS);
-        }
+        // 加锁的同时原子地设置一个失效时间，防止因为意外导致分布式锁一直锁定
+        boolean flag = storage.setIfAbsent(NXKEY + key, MUTEX_VALUE, MUTEX_EXPIRE_SEC, TimeUnit.SECONDS);
 
         if (flag) {
             return flag;
@@ -87,15 +89,19 @@ public class RedisLockHelper {
 
     /** 在利用分布式锁获取缓存值时, 为了避免无限循环, 设定一个重试次数上限, 保存在线程上下文 */
     public boolean reachMaxRetryCount(String key) {
-        String countKey = "cache-retry." + key;
-        Integer count = ThreadContext.get(countKey, 1);
+        Map<String, Integer> retryCounts = RETRY_COUNTS.get();
+        if (retryCounts == null) {
+            retryCounts = new HashMap<>();
+            RETRY_COUNTS.set(retryCounts);
+        }
+        int count = retryCounts.getOrDefault(key, 1);
         if (log.isDebugEnabled()) {
             log.debug(">> 第{}次重试获取缓存: {}", count, key);
         }
         if (count > MUTEX_MAX_RETRY) {
             return true;
         } else {
-            ThreadContext.set(countKey, count + 1);
+            retryCounts.put(key, count + 1);
             return false;
         }
     }
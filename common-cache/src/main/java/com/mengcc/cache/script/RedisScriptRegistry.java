@@ -0,0 +1,216 @@
+package com.mengcc.cache.script;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc lua脚本注册表
+ *
+ * <p>集中登记redis缓存使用的lua脚本, 保证组合操作在服务端原子执行且只需一次网络往返。
+ * 脚本通过{@link RedisTemplate#execute(RedisScript, java.util.List, Object...)}执行,
+ * 先以EVALSHA发送脚本摘要, 服务端返回NOSCRIPT时自动改用EVAL发送脚本全文;
+ * redis缓存创建时调用{@link #preload(RedisTemplate)}预先加载所有脚本, 省去首次执行时的NOSCRIPT往返。</p>
+ */
+public final class RedisScriptRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisScriptRegistry.class);
+
+    private static final Map<String, RedisScript<?>> SCRIPTS = new ConcurrentHashMap<>();
+
+    /**
+     * 设置缓存并加入标签索引, 标签索引的存活时间不短于其中任一缓存的存活时间
+     * <p>KEYS[1]: 缓存key, KEYS[2..n]: 标签索引key; ARGV[1]: 缓存值, ARGV[2]: 存活毫秒数, 小于等于0表示永不失效</p>
+     */
+    public static final RedisScript<Long> SET_WITH_TAGS = register("setWithTags",
+            "local ttl = tonumber(ARGV[2])\n" +
+            "if ttl > 0 then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[1], 'PX', ttl)\n" +
+            "else\n" +
+            "  redis.call('SET', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "for i = 2, #KEYS do\n" +
+            "  local existed = redis.call('EXISTS', KEYS[i])\n" +
+            "  redis.call('SADD', KEYS[i], KEYS[1])\n" +
+            "  if ttl <= 0 then\n" +
+            "    redis.call('PERSIST', KEYS[i])\n" +
+            "  else\n" +
+            "    local current = redis.call('PTTL', KEYS[i])\n" +
+            "    if existed == 0 or (current >= 0 and current < ttl) then\n" +
+            "      redis.call('PEXPIRE', KEYS[i], ttl)\n" +
+            "    end\n" +
+            "  end\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    /**
+     * 删除标签索引中的所有缓存以及标签索引本身
+     * <p>KEYS[1]: 标签索引key</p>
+     */
+    public static final RedisScript<Long> INVALIDATE_TAG = register("invalidateTag",
+            "local members = redis.call('SMEMBERS', KEYS[1])\n" +
+            "for i = 1, #members, 500 do\n" +
+            "  redis.call('DEL', unpack(members, i, math.min(i + 499, #members)))\n" +
+            "end\n" +
+            "redis.call('DEL', KEYS[1])\n" +
+            "return #members", Long.class);
+
+    /**
+     * 获取缓存值并删除
+     * <p>KEYS[1]: 缓存key</p>
+     */
+    public static final RedisScript<Object> GET_AND_DELETE = register("getAndDelete",
+            "local value = redis.call('GET', KEYS[1])\n" +
+            "if value then\n" +
+            "  redis.call('DEL', KEYS[1])\n" +
+            "end\n" +
+            "return value", Object.class);
+
+    /**
+     * 获取缓存值并重新设置存活时间
+     * <p>KEYS[1]: 缓存key; ARGV[1]: 存活毫秒数</p>
+     */
+    public static final RedisScript<Object> GET_AND_EXPIRE = register("getAndExpire",
+            "local value = redis.call('GET', KEYS[1])\n" +
+            "if value then\n" +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "return value", Object.class);
+
+    /**
+     * 版本号与期望一致时设置缓存值并递增版本号, 保留缓存原有的存活时间, 版本号与缓存值的存活时间一致
+     * <p>KEYS[1]: 缓存key, KEYS[2]: 版本号key; ARGV[1]: 期望的版本号, ARGV[2]: 新的缓存值</p>
+     */
+    public static final RedisScript<Long> COMPARE_AND_SET = register("compareAndSet",
+            "local current = tonumber(redis.call('GET', KEYS[2]) or '0')\n" +
+            "if current ~= tonumber(ARGV[1]) then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "local ttl = redis.call('PTTL', KEYS[1])\n" +
+            "if ttl > 0 then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[2], 'PX', ttl)\n" +
+            "else\n" +
+            "  redis.call('SET', KEYS[1], ARGV[2])\n" +
+            "end\n" +
+            "redis.call('INCR', KEYS[2])\n" +
+            "if ttl > 0 then\n" +
+            "  redis.call('PEXPIRE', KEYS[2], ttl)\n" +
+            "else\n" +
+            "  redis.call('PERSIST', KEYS[2])\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    /**
+     * 申请或续期信号量的许可, 以有序集合保存持有者及其租约到期时间, 使用redis服务器的时间避免各客户端时钟不一致
+     * <p>KEYS[1]: 信号量key; ARGV[1]: 持有者标识, ARGV[2]: 许可总数, ARGV[3]: 租约毫秒数</p>
+     */
+    public static final RedisScript<Long> ACQUIRE_PERMIT = register("acquirePermit",
+            "redis.replicate_commands()\n" +
+            "local time = redis.call('TIME')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+            "local lease = tonumber(ARGV[3])\n" +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now)\n" +
+            "if redis.call('ZSCORE', KEYS[1], ARGV[1]) or redis.call('ZCARD', KEYS[1]) < tonumber(ARGV[2]) then\n" +
+            "  redis.call('ZADD', KEYS[1], now + lease, ARGV[1])\n" +
+            "  if redis.call('PTTL', KEYS[1]) < lease then\n" +
+            "    redis.call('PEXPIRE', KEYS[1], lease)\n" +
+            "  end\n" +
+            "  return 1\n" +
+            "end\n" +
+            "return 0", Long.class);
+
+    /**
+     * 计数器减1, 计数器不存在时返回-1且不创建, 减到0后保留为0直到失效; DECR保留计数器原有的失效时间
+     * <p>KEYS[1]: 计数器key</p>
+     */
+    public static final RedisScript<Long> COUNT_DOWN = register("countDown",
+            "local count = tonumber(redis.call('GET', KEYS[1]))\n" +
+            "if count == nil then\n" +
+            "  return -1\n" +
+            "end\n" +
+            "if count <= 0 then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "return redis.call('DECR', KEYS[1])", Long.class);
+
+    /**
+     * 替换分块缓存值的清单并返回替换前的清单, 用于确定需要过期的旧批次
+     * <p>KEYS[1]: 清单key; ARGV[1]: 新的清单, ARGV[2]: 存活毫秒数, 小于等于0表示永不失效</p>
+     */
+    public static final RedisScript<byte[]> SWAP_CHUNK_MANIFEST = register("swapChunkManifest",
+            "local old = redis.call('GET', KEYS[1])\n" +
+            "local ttl = tonumber(ARGV[2])\n" +
+            "if ttl > 0 then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[1], 'PX', ttl)\n" +
+            "else\n" +
+            "  redis.call('SET', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "return old", byte[].class);
+
+    private RedisScriptRegistry() {
+    }
+
+    /**
+     * 登记一个lua脚本
+     * @param name 脚本名称, 重复登记时覆盖
+     * @param scriptText 脚本内容
+     * @param resultType 脚本返回值类型, 参见{@link org.springframework.data.redis.connection.ReturnType#fromJavaType(Class)}
+     * @param <T>
+     * @return
+     */
+    public static <T> RedisScript<T> register(String name, String scriptText, Class<T> resultType) {
+        RedisScript<T> script = new DefaultRedisScript<>(scriptText, resultType);
+        SCRIPTS.put(name, script);
+        return script;
+    }
+
+    /**
+     * 根据名称获取已登记的脚本
+     * @param name
+     * @param <T>
+     * @return 未登记则返回{@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RedisScript<T> get(String name) {
+        return (RedisScript<T>) SCRIPTS.get(name);
+    }
+
+    /**
+     * 已登记的所有脚本
+     * @return
+     */
+    public static Collection<RedisScript<?>> scripts() {
+        return Collections.unmodifiableCollection(SCRIPTS.values());
+    }
+
+    /**
+     * 通过SCRIPT LOAD将所有已登记的脚本预先加载到redis, 加载失败(如: redis暂时不可用)不影响脚本的执行
+     * @param redisTemplate
+     */
+    public static void preload(RedisTemplate<String, ?> redisTemplate) {
+        try {
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                SCRIPTS.forEach((name, script) -> {
+                    String sha1 = connection.scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+                    if (log.isDebugEnabled()) {
+                        log.debug(">> 预加载lua脚本[{}]: {}", name, sha1);
+                    }
+                });
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn(">> 预加载lua脚本失败, 首次执行时再加载: {}", e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.mengcc.cache.storage;
 
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -122,4 +124,152 @@ public interface CacheStorage<V> {
      * @return
      */
     Long increment(String key, int delta);
+
+    /**
+     * 批量增长多个计数器, 在redis上通过pipeline一次提交多个INCRBY
+     * @param deltas key(无需前缀)与增量的映射
+     * @return 每个key增长后的值
+     */
+    Map<String, Long> incrementAll(Map<String, Long> deltas);
+
+    /**
+     * 设置key对应的缓存, 并为其打上标签, 之后可以通过{@link #invalidateTag(String)}按标签批量删除
+     * @param key
+     * @param value
+     * @param timeout 小于等于0表示永不失效
+     * @param unit
+     * @param tags 标签, 同一个key可以有多个标签
+     */
+    void set(String key, V value, long timeout, TimeUnit unit, Collection<String> tags);
+
+    /**
+     * 删除打上了指定标签的所有缓存, 通过维护的标签索引定位key, 无需扫描所有key
+     * @param tag
+     * @return 标签索引中的key数量
+     */
+    long invalidateTag(String tag);
+
+    /**
+     * 仅当key不存在时, 才设置key对应的缓存值, 并原子地指定失效时间
+     * @param key
+     * @param value
+     * @param timeout
+     * @param unit
+     * @return 设置成功则返回{@code true}
+     */
+    boolean setIfAbsent(String key, V value, long timeout, TimeUnit unit);
+
+    /**
+     * 原子地获取key对应的缓存值并删除该key
+     * @param key
+     * @return 删除前的缓存值
+     */
+    V getAndDelete(String key);
+
+    /**
+     * 原子地获取key对应的缓存值并重新设置存活时间
+     * @param key
+     * @param timeout
+     * @param unit
+     * @return key对应的缓存值, key不存在时返回{@code null}且不设置存活时间
+     */
+    V getAndExpire(String key, long timeout, TimeUnit unit);
+
+    /**
+     * 获取key的版本号, 版本号只由{@link #compareAndSet(String, long, Object)}递增
+     * @param key
+     * @return 从未通过compareAndSet设置过的key版本号为0
+     */
+    long getVersion(String key);
+
+    /**
+     * 仅当key的版本号与期望的版本号一致时才设置缓存值, 并将版本号加1, 缓存原有的失效时间保持不变
+     * @param key
+     * @param expectedVersion 期望的版本号, 通常是读取缓存时{@link #getVersion(String)}返回的值
+     * @param value
+     * @return 设置成功则返回{@code true}
+     */
+    boolean compareAndSet(String key, long expectedVersion, V value);
+
+    /**
+     * 获取hash结构缓存中指定字段的值, 每个字段的值单独反序列化, 无需读取整个对象
+     * @param key
+     * @param fields 为空时返回所有字段
+     * @return 字段名与值的映射, 不存在的字段不会包含在结果中
+     */
+    Map<String, V> getFields(String key, Collection<String> fields);
+
+    /**
+     * 设置hash结构缓存中的多个字段, 每个字段的值单独序列化, 未指定的字段保持不变
+     * @param key
+     * @param fields 字段名与值的映射
+     */
+    void setFields(String key, Map<String, V> fields);
+
+    /**
+     * 增长hash结构缓存中某个字段的整数值
+     * @param key
+     * @param field
+     * @param delta
+     * @return 增长后的值
+     */
+    Long incrementField(String key, String field, long delta);
+
+    /**
+     * 分块保存大的缓存值(如: 几十MB的报表), 数据按固定大小切分到多个key中, 由一个清单key统一管理,
+     * 避免单个大value阻塞redis, 分块与清单的失效时间作为一个整体管理
+     * @param key 清单key
+     * @param data 原始数据, 不经过序列化, 由调用方负责关闭
+     * @param timeout 小于等于0表示永不失效
+     * @param unit
+     */
+    void setChunked(String key, InputStream data, long timeout, TimeUnit unit);
+
+    /**
+     * 以流的方式读取分块保存的缓存值, 逐块加载, 不会一次性分配整个值的内存
+     * @param key 清单key
+     * @return key不存在时返回{@code null}
+     */
+    InputStream getChunked(String key);
+
+    /**
+     * 为分块保存的缓存值整体设置存活时间
+     * @param key 清单key
+     * @param timeout
+     * @param unit
+     * @return 成功设置则返回{@code true}
+     */
+    boolean expireChunked(String key, long timeout, TimeUnit unit);
+
+    /**
+     * 删除分块保存的缓存值及其所有分块
+     * @param key 清单key
+     */
+    void deleteChunked(String key);
+
+    /**
+     * 申请信号量的一个许可, 许可带有租约, 持有者未在租约到期前释放或续期时自动归还
+     * @param key 信号量的key
+     * @param holder 持有者标识, 同一持有者再次申请即为续期
+     * @param permits 许可总数
+     * @param leaseTime 租约时长
+     * @param unit
+     * @return 申请或续期成功则返回{@code true}
+     */
+    boolean acquirePermit(String key, String holder, int permits, long leaseTime, TimeUnit unit);
+
+    /**
+     * 释放持有者的许可
+     * @param key 信号量的key
+     * @param holder 持有者标识
+     * @return 持有者确实持有许可则返回{@code true}, 租约已过期时返回{@code false}
+     */
+    boolean releasePermit(String key, String holder);
+
+    /**
+     * 计数器原子地减1, 保留计数器原有的失效时间; 减到0后保留为0直到失效, 以区分已归零和不存在; 计数器不存在时不会创建
+     * @param key 计数器的key
+     * @return 减少后的计数, 已归零时返回0, 计数器不存在(未设置或已过期)时返回{@code null}
+     */
+    Long countDown(String key);
 }
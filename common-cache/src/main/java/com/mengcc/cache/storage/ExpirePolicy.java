@@ -0,0 +1,15 @@
+package com.mengcc.cache.storage;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 本地缓存的过期策略, 缓存时长由每个缓存写入时指定, 未指定时长的缓存永不过期
+ */
+public enum ExpirePolicy {
+
+    /** 写入后过期: 从写入(或重新设置时长)起计算, 读取不会延长 */
+    AFTER_WRITE,
+
+    /** 访问后过期: 每次读取都从读取时起重新计算, 长期无人访问的缓存才会过期 */
+    AFTER_ACCESS
+}
@@ -0,0 +1,21 @@
+package com.mengcc.cache.storage;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 缓存被移除的原因
+ */
+public enum RemovalCause {
+
+    /** 主动删除, 如: delete、getAndDelete、invalidateTag */
+    EXPLICIT,
+
+    /** 已过期, 读取时发现或被定时任务清理 */
+    EXPIRED,
+
+    /** 超出容量被淘汰, 供有容量上限的缓存实现使用 */
+    SIZE,
+
+    /** 被新值覆盖, 如: set、compareAndSet、increment */
+    REPLACED
+}
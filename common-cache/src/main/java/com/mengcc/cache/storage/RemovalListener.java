@@ -0,0 +1,18 @@
+package com.mengcc.cache.storage;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 缓存移除的监听器, 在独立的线程中异步调用, 不会阻塞缓存的读写
+ */
+@FunctionalInterface
+public interface RemovalListener<V> {
+
+    /**
+     * 缓存被移除后调用
+     * @param key   不带前缀的key
+     * @param value 被移除的缓存值, 空值、hash结构或分块保存的缓存值为{@code null}
+     * @param cause 移除的原因
+     */
+    void onRemoval(String key, V value, RemovalCause cause);
+}
@@ -0,0 +1,183 @@
+package com.mengcc.cache.storage.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自动合并单key读操作的redis缓存, 在{@link RedisCacheStorage}的基础上按需启用。
+ * <p>多个线程并发调用{@link #get(String)}和{@link #hasKey(String)}时, 在一个很短的时间窗口内(微秒级)
+ * 或累计达到指定数量的命令会合并为一次pipeline发送, 结果再分发给各个调用线程, 调用方的代码无需改动。
+ * 单线程低并发时每次调用最多多等待一个时间窗口。</p>
+ *
+ * @author zhouzq
+ * @date 2026/10/19
+ */
+public class AutoPipeliningRedisCacheStorage extends RedisCacheStorage implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AutoPipeliningRedisCacheStorage.class);
+
+    /** 默认的合并时间窗口(微秒) */
+    private static final long DEFAULT_WINDOW_MICROS = 200L;
+
+    /** 默认每个pipeline的最大命令数 */
+    private static final int DEFAULT_MAX_BATCH_SIZE = 128;
+
+    final private RedisTemplate<String, Object> redisTemplate;
+    final private long windowNanos;
+    final private int maxBatchSize;
+
+    final private ConcurrentLinkedQueue<PendingCommand> pendingCommands = new ConcurrentLinkedQueue<>();
+    final private AtomicInteger pendingCount = new AtomicInteger(0);
+    final private AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    final private ScheduledExecutorService flusher;
+
+    public AutoPipeliningRedisCacheStorage(String keyPrefix, RedisTemplate<String, Object> redisTemplate) {
+        this(keyPrefix, redisTemplate, DEFAULT_WINDOW_MICROS, TimeUnit.MICROSECONDS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param keyPrefix     key的统一前缀
+     * @param redisTemplate
+     * @param window        合并时间窗口, 窗口内的命令合并为一次pipeline
+     * @param unit          window的单位
+     * @param maxBatchSize  累计达到此数量的命令时立即发送, 不再等待时间窗口
+     */
+    public AutoPipeliningRedisCacheStorage(String keyPrefix, RedisTemplate<String, Object> redisTemplate,
+                                           long window, TimeUnit unit, int maxBatchSize) {
+        super(keyPrefix, redisTemplate);
+        if (window <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("window and maxBatchSize must be positive");
+        }
+        this.redisTemplate = redisTemplate;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+        this.flusher = new ScheduledThreadPoolExecutor(1,
+                new BasicThreadFactory.Builder().namingPattern("cache-pipeline-thread-%d").daemon(true).build());
+    }
+
+    @Override
+    public Object get(String key) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        return await(enqueue(key, false));
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        if (StringUtils.isBlank(key)) {
+            return false;
+        }
+        return Boolean.TRUE.equals(await(enqueue(key, true)));
+    }
+
+    /**
+     * 停止合并线程, 已排队的命令会先发送完
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    private CompletableFuture<Object> enqueue(String key, boolean exists) {
+        PendingCommand command = new PendingCommand(redisTemplate.getStringSerializer().serialize(getKeyPrefix() + key), exists);
+        pendingCommands.add(command);
+        if (pendingCount.incrementAndGet() >= maxBatchSize) {
+            // 攒满一批则由当前线程直接发送, 省去一次线程切换
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.schedule(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                }, windowNanos, TimeUnit.NANOSECONDS);
+            } catch (RuntimeException e) {
+                // 已关闭, 由当前线程发送
+                flushScheduled.set(false);
+                flush();
+            }
+        }
+        return command.future;
+    }
+
+    /**
+     * 发送所有排队的命令, 每个pipeline最多maxBatchSize个命令
+     */
+    private void flush() {
+        List<PendingCommand> batch = new ArrayList<>(maxBatchSize);
+        PendingCommand command;
+        while ((command = pendingCommands.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(command);
+            if (batch.size() >= maxBatchSize) {
+                execute(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            execute(batch);
+        }
+    }
+
+    private void execute(List<PendingCommand> batch) {
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                batch.forEach(cmd -> {
+                    if (cmd.exists) {
+                        connection.exists(cmd.rawKey);
+                    } else {
+                        connection.get(cmd.rawKey);
+                    }
+                });
+                return null;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(">> 合并了{}个命令为一次pipeline", batch.size());
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(cmd -> cmd.future.completeExceptionally(e));
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * 排队等待发送的命令
+     */
+    private static final class PendingCommand {
+        final byte[] rawKey;
+        final boolean exists;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        PendingCommand(byte[] rawKey, boolean exists) {
+            this.rawKey = rawKey;
+            this.exists = exists;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.mengcc.cache.storage.impl;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * 缓存值的封装类。
  * <p>有些缓存不允许保存空值(比如: ConcurrentHashMap), 将值封装后可以保证空值也可以保存</p>
@@ -9,35 +11,115 @@ package com.mengcc.cache.storage.impl;
  */
 class CacheValueWrapper {
     /** 缓存数据 */
-    private byte[] cacheObject;
+    private final byte[] cacheObject;
+
+    /** hash结构的缓存数据, 字段名 -> 单独序列化的字段值, 普通缓存为{@code null} */
+    private final ConcurrentHashMap<String, byte[]> fields;
+
+    /** 分块保存的缓存数据, 普通缓存为{@code null} */
+    private final byte[][] chunks;
 
-    /** 最后加载时间 */
-    private long lastLoadTime;
+    /** 缓存时长(毫秒), 小于等于0表示永不过期 */
+    private volatile long ttlMillis;
 
-    /** 缓存时长(秒) */
-    private int expire;
+    /** 过期的时间点(毫秒), 0表示永不过期; 读取时不修改, 仅在访问后过期的策略下由{@link #touch()}推后 */
+    private volatile long deadline;
 
     CacheValueWrapper(byte[] cacheObject) {
         this(cacheObject, -1);
     }
 
-    CacheValueWrapper(byte[] cacheObject, int expire) {
+    /**
+     * @param cacheObject
+     * @param ttlMillis 缓存时长(毫秒), 小于等于0表示永不过期
+     */
+    CacheValueWrapper(byte[] cacheObject, long ttlMillis) {
+        this(cacheObject, null, null, ttlMillis);
+    }
+
+    private CacheValueWrapper(byte[] cacheObject, ConcurrentHashMap<String, byte[]> fields, byte[][] chunks, long ttlMillis) {
         this.cacheObject = cacheObject;
-        this.lastLoadTime = System.currentTimeMillis();
-        this.expire = expire;
+        this.fields = fields;
+        this.chunks = chunks;
+        setExpireMillis(ttlMillis);
+    }
+
+    /**
+     * 创建一个空的hash结构的缓存值
+     * @return
+     */
+    static CacheValueWrapper ofHash() {
+        return new CacheValueWrapper(null, new ConcurrentHashMap<>(), null, -1);
+    }
+
+    /**
+     * 创建一个分块保存的缓存值
+     * @param chunks
+     * @param ttlMillis 缓存时长(毫秒)
+     * @return
+     */
+    static CacheValueWrapper ofChunks(byte[][] chunks, long ttlMillis) {
+        return new CacheValueWrapper(null, null, chunks, ttlMillis);
+    }
+
+    byte[][] getChunks() {
+        return chunks;
+    }
+
+    boolean isHash() {
+        return fields != null;
+    }
+
+    ConcurrentHashMap<String, byte[]> getFields() {
+        return fields;
+    }
+
+    /**
+     * 替换缓存数据, 保留原有的失效时间
+     * @param cacheObject
+     * @return 新的缓存值
+     */
+    CacheValueWrapper withCacheObject(byte[] cacheObject) {
+        CacheValueWrapper wrapper = new CacheValueWrapper(cacheObject);
+        wrapper.ttlMillis = ttlMillis;
+        wrapper.deadline = deadline;
+        return wrapper;
     }
 
     boolean isExpired() {
-        return expire > 0 && ((System.currentTimeMillis() - lastLoadTime) > (expire * 1000));
+        long expireAt = deadline;
+        return expireAt > 0 && System.currentTimeMillis() > expireAt;
     }
 
     byte[] getCacheObject() {
-        lastLoadTime = System.currentTimeMillis();
         return cacheObject;
     }
 
-    void setExpire(int expire) {
-        lastLoadTime = System.currentTimeMillis();
-        this.expire = expire;
+    /**
+     * 过期的时间点(毫秒)
+     * @return 0表示永不过期
+     */
+    long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * 从当前时间起重新计算过期时间点, 用于访问后过期的策略
+     */
+    void touch() {
+        long ttl = ttlMillis;
+        if (ttl > 0) {
+            deadline = System.currentTimeMillis() + ttl;
+        }
+    }
+
+    /**
+     * 重新设置缓存时长, 从当前时间起计算
+     * @param ttlMillis 缓存时长(毫秒), 小于等于0表示永不过期; 按毫秒保存, 不足1秒的时长也会生效
+     */
+    void setExpireMillis(long ttlMillis) {
+        long ttl = ttlMillis > 0 ? ttlMillis : 0L;
+        this.ttlMillis = ttl;
+        deadline = ttl > 0 ? System.currentTimeMillis() + ttl : 0L;
     }
 }
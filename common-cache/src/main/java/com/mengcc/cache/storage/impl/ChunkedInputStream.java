@@ -0,0 +1,108 @@
+package com.mengcc.cache.storage.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.IntFunction;
+
+/**
+ * 逐块读取分块缓存值的输入流, 读完当前分块后才加载下一个分块, 同一时刻只在内存中保留一个分块
+ *
+ * @author zhouzq
+ * @date 2026/10/19
+ */
+class ChunkedInputStream extends InputStream {
+
+    private final int chunkCount;
+    private final IntFunction<byte[]> chunkLoader;
+
+    private int nextChunk = 0;
+    private byte[] current;
+    private int position;
+
+    /**
+     * @param chunkCount  分块数量
+     * @param chunkLoader 根据分块序号加载分块, 分块不存在时返回{@code null}
+     */
+    ChunkedInputStream(int chunkCount, IntFunction<byte[]> chunkLoader) {
+        this.chunkCount = chunkCount;
+        this.chunkLoader = chunkLoader;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureChunk()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureChunk()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() {
+        current = null;
+        nextChunk = chunkCount;
+    }
+
+    /**
+     * 从输入流中读满一个分块
+     * @param data      输入流
+     * @param chunkSize 分块大小
+     * @return 输入流已结束则返回{@code null}, 最后一个分块可能不满
+     * @throws IOException
+     */
+    static byte[] readChunk(InputStream data, int chunkSize) throws IOException {
+        byte[] buffer = new byte[chunkSize];
+        int length = 0;
+        int read;
+        while (length < chunkSize && (read = data.read(buffer, length, chunkSize - length)) > 0) {
+            length += read;
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (length < chunkSize) {
+            byte[] chunk = new byte[length];
+            System.arraycopy(buffer, 0, chunk, 0, length);
+            return chunk;
+        }
+        return buffer;
+    }
+
+    /**
+     * 当前分块读完时加载下一个分块
+     * @return 还有数据可读则返回{@code true}
+     */
+    private boolean ensureChunk() throws IOException {
+        while (current == null || position >= current.length) {
+            if (nextChunk >= chunkCount) {
+                return false;
+            }
+            byte[] chunk = chunkLoader.apply(nextChunk);
+            if (chunk == null) {
+                throw new IOException("chunk " + nextChunk + " of cached value is missing, it may have expired or been replaced");
+            }
+            current = chunk;
+            position = 0;
+            nextChunk++;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,245 @@
+package com.mengcc.cache.storage.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 适用于redis集群的缓存, 在{@link RedisCacheStorage}的基础上处理跨slot的多key操作。
+ * <p>集群中一条多key命令只能操作同一个slot的key, 批量删除和批量自增时先按slot计算出key所在的节点,
+ * 不同节点的key并行处理; 批量删除在同一节点内按slot分组后逐组发送, 批量自增在同一节点内通过一次pipeline发送。</p>
+ * <p>标签、版本号等需要在一个脚本中同时操作多个key的功能, 要求这些key位于同一个slot,
+ * 此时可以用{@link #hashTagPrefix(String)}生成带hash tag的key前缀, 让同一前缀下的key落在同一个slot。
+ * 读写分离通过连接工厂配置, 见{@link com.mengcc.cache.config.RedisConfigHelper#newClusterConnectionFactory}。</p>
+ *
+ * @author zhouzq
+ * @date 2026/10/19
+ */
+public class ClusterRedisCacheStorage extends RedisCacheStorage implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterRedisCacheStorage.class);
+
+    /** 默认并行处理的节点数量 */
+    private static final int DEFAULT_PARALLELISM = 8;
+
+    final private RedisTemplate<String, Object> redisTemplate;
+    final private ExecutorService executor;
+
+    public ClusterRedisCacheStorage(String keyPrefix, RedisTemplate<String, Object> redisTemplate) {
+        this(keyPrefix, redisTemplate, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param keyPrefix     key的统一前缀, 需要多个key位于同一个slot时使用{@link #hashTagPrefix(String)}生成
+     * @param redisTemplate
+     * @param parallelism   最多同时处理多少个节点的批量操作
+     */
+    public ClusterRedisCacheStorage(String keyPrefix, RedisTemplate<String, Object> redisTemplate, int parallelism) {
+        super(keyPrefix, redisTemplate);
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.redisTemplate = redisTemplate;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new BasicThreadFactory.Builder().namingPattern("cache-cluster-thread-%d").daemon(true).build());
+    }
+
+    /**
+     * 生成带hash tag的key前缀, 前缀相同的key计算slot时只使用花括号内的部分, 因此一定位于同一个slot
+     * @param prefix 前缀, 如: user:1001
+     * @return 如: {user:1001}:
+     */
+    public static String hashTagPrefix(String prefix) {
+        if (StringUtils.isBlank(prefix)) {
+            throw new IllegalArgumentException("prefix must not be blank");
+        }
+        return "{" + prefix + "}:";
+    }
+
+    @Override
+    public void deleteByPattern(String pattern) {
+        if (StringUtils.isBlank(pattern)) {
+            return;
+        }
+        Set<String> keys = redisTemplate.keys(getKeyPrefix() + pattern);
+        if (keys != null && !keys.isEmpty()) {
+            log.debug(">> [deleteByPattern] deleting keys: {}", keys);
+            deleteRawKeys(keys);
+        }
+    }
+
+    @Override
+    public void deleteWithPrex(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        List<String> prefixKeys = keys.stream()
+                .filter(StringUtils::isNotBlank)
+                .map(key -> getKeyPrefix() + key)
+                .distinct()
+                .collect(Collectors.toList());
+        if (!prefixKeys.isEmpty()) {
+            log.debug(">> [deleteWithPrex] deleting keys: {}", prefixKeys);
+            deleteRawKeys(prefixKeys);
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        log.debug(">> [delete(Collection)] deleting keys: {}", keys);
+        deleteRawKeys(keys);
+    }
+
+    @Override
+    public Map<String, Long> incrementAll(Map<String, Long> deltas) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (deltas == null || deltas.isEmpty()) {
+            return result;
+        }
+        Map<String, String> prefixToKey = new HashMap<>();
+        deltas.keySet().forEach(key -> prefixToKey.put(getKeyPrefix() + key, key));
+        Map<String, Long> values = new ConcurrentHashMap<>();
+        RedisSerializer<String> keySerializer = redisTemplate.getStringSerializer();
+        executeByNode(prefixToKey.keySet(), (connection, nodeKeys) -> {
+            boolean pipelined = openPipeline(connection);
+            List<Object> results = new ArrayList<>(nodeKeys.size());
+            for (String prefixKey : nodeKeys) {
+                Long value = connection.incrBy(keySerializer.serialize(prefixKey), deltas.get(prefixToKey.get(prefixKey)));
+                if (!pipelined) {
+                    results.add(value);
+                }
+            }
+            if (pipelined) {
+                results = connection.closePipeline();
+            }
+            for (int i = 0; i < nodeKeys.size(); i++) {
+                values.put(prefixToKey.get(nodeKeys.get(i)), (Long) results.get(i));
+            }
+        });
+        deltas.keySet().forEach(key -> result.put(key, values.get(key)));
+        return result;
+    }
+
+    /**
+     * 停止并行处理的线程
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private void deleteRawKeys(Collection<String> keys) {
+        RedisSerializer<String> keySerializer = redisTemplate.getStringSerializer();
+        executeBySlot(keys, (connection, slotKeys) ->
+                connection.del(slotKeys.stream().map(keySerializer::serialize).toArray(byte[][]::new)));
+    }
+
+    /**
+     * 按节点并行、节点内按slot分组执行多key操作
+     * @param keys    完整的key(已带前缀)
+     * @param command 对同一个slot的一组key执行的操作
+     */
+    private void executeBySlot(Collection<String> keys, BiFunction<RedisConnection, List<String>, ?> command) {
+        forEachNode(keys, (connection, slotGroups) -> slotGroups.forEach(slotKeys -> command.apply(connection, slotKeys)));
+    }
+
+    /**
+     * 按节点并行执行操作, 每个节点只调用一次
+     * @param keys    完整的key(已带前缀)
+     * @param command 对同一个节点上的所有key执行的操作
+     */
+    private void executeByNode(Collection<String> keys, BiConsumer<RedisConnection, List<String>> command) {
+        forEachNode(keys, (connection, slotGroups) -> command.accept(connection,
+                slotGroups.stream().flatMap(List::stream).collect(Collectors.toList())));
+    }
+
+    private void forEachNode(Collection<String> keys, BiConsumer<RedisConnection, List<List<String>>> command) {
+        Map<Integer, List<String>> keysBySlot = new HashMap<>();
+        for (String key : keys) {
+            keysBySlot.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(key), slot -> new ArrayList<>()).add(key);
+        }
+        Map<Object, List<List<String>>> slotsByNode = groupByNode(keysBySlot);
+        if (slotsByNode.size() == 1) {
+            // 只涉及一个节点时无需切换线程
+            executeOnNode(slotsByNode.values().iterator().next(), command);
+            return;
+        }
+        CompletableFuture<?>[] futures = slotsByNode.values().stream()
+                .map(slotGroups -> CompletableFuture.runAsync(() -> executeOnNode(slotGroups, command), executor))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private void executeOnNode(List<List<String>> slotGroups, BiConsumer<RedisConnection, List<List<String>>> command) {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            command.accept(connection, slotGroups);
+            return null;
+        });
+    }
+
+    /**
+     * 开启pipeline, lettuce的集群连接按key把命令路由到所属节点, jedis的集群连接不支持pipeline
+     * @return 连接不支持pipeline时返回{@code false}, 此时命令逐条发送
+     */
+    private static boolean openPipeline(RedisConnection connection) {
+        try {
+            connection.openPipeline();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 根据集群拓扑把slot分配到所属的主节点, 非集群连接时所有slot视为同一个节点
+     */
+    private Map<Object, List<List<String>>> groupByNode(Map<Integer, List<String>> keysBySlot) {
+        return redisTemplate.execute((RedisCallback<Map<Object, List<List<String>>>>) connection -> {
+            Map<Object, List<List<String>>> slotsByNode = new HashMap<>();
+            keysBySlot.forEach((slot, slotKeys) -> {
+                Object node = "standalone";
+                if (connection instanceof RedisClusterConnection) {
+                    RedisClusterNode clusterNode = ((RedisClusterConnection) connection).clusterGetNodeForSlot(slot);
+                    node = clusterNode == null ? slot : clusterNode.asString();
+                }
+                slotsByNode.computeIfAbsent(node, n -> new ArrayList<>()).add(slotKeys);
+            });
+            return slotsByNode;
+        });
+    }
+}
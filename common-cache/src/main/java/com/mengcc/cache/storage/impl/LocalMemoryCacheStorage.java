@@ -2,20 +2,39 @@ package com.mengcc.cache.storage.impl;
 
 import com.mengcc.cache.config.RedisConfigHelper;
 import com.mengcc.cache.storage.CacheStorage;
+import com.mengcc.cache.storage.ExpirePolicy;
+import com.mengcc.cache.storage.RemovalCause;
+import com.mengcc.cache.storage.RemovalListener;
 import com.mengcc.core.utils.StringUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -23,8 +42,13 @@ import java.util.stream.Collectors;
  * @author zhouzq
  * @date 2019/8/13
  * @desc 本地缓存
+ *
+ * <p>每个缓存的时长在写入时指定, 按{@link ExpirePolicy}决定读取是否延长时长。
+ * 有时长的缓存按过期时间所在的秒登记到过期桶中, 清理线程每秒只检查到期的桶, 无需扫描全部缓存;
+ * 读取和延长时长只修改缓存值上的过期时间点, 桶中的登记在到期检查时发现未过期再移到新的桶。</p>
+ * <p>指定了缓存数量上限时, 超出上限后按过期时间从早到晚淘汰有时长的缓存, 没有时长的缓存不会被淘汰。</p>
  */
-public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
+public class LocalMemoryCacheStorage<V> implements CacheStorage<V>, Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(LocalMemoryCacheStorage.class);
 
@@ -32,24 +56,133 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
 
     final private ConcurrentHashMap<String, CacheValueWrapper> cache = new ConcurrentHashMap<>();
 
+    /** 有序的key索引, 用于前缀匹配的key查询, 与cache在同一个key的compute中同步更新 */
+    final private ConcurrentSkipListSet<String> keyIndex = new ConcurrentSkipListSet<>();
+
+    /** 标签索引, 标签 -> 带前缀的key */
+    final private ConcurrentHashMap<String, Set<String>> tagIndex = new ConcurrentHashMap<>();
+
+    /**
+     * compareAndSet使用的版本号, 带前缀的key -> 版本号;
+     * 与redis的版本号key一致, 版本号沿用compareAndSet时缓存的失效时间: 缓存被删除时版本号仍然保留, 避免重新写入后从0开始而产生ABA问题,
+     * 缓存过期后版本号随之失效, 由清理任务移除
+     */
+    final private ConcurrentHashMap<String, CasVersion> versions = new ConcurrentHashMap<>();
+
+    /** 信号量的租约, 带前缀的key -> (持有者 -> 租约到期时间), 只在同一个key的compute中修改 */
+    final private ConcurrentHashMap<String, Map<String, Long>> permitLeases = new ConcurrentHashMap<>();
+
     final private String keyPrefix;
 
+    final private ExpirePolicy expirePolicy;
+
+    /** 缓存数量上限, 小于等于0表示不限 */
+    final private int maxEntries;
+
+    /** 是否有线程正在淘汰超出上限的缓存 */
+    final private AtomicBoolean evicting = new AtomicBoolean(false);
+
+    /** 过期桶, 过期时间所在的秒 -> 带前缀的key, 登记可能已失效, 到期检查时以缓存值上的过期时间为准 */
+    final private ConcurrentHashMap<Long, Set<String>> expiryBuckets = new ConcurrentHashMap<>();
+
+    /** 已检查到的过期桶(秒), 只由清理线程修改 */
+    private volatile long expiryCursor = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+    /** 缓存移除的监听器 */
+    final private List<RemovalListener<V>> removalListeners = new CopyOnWriteArrayList<>();
+
+    /** 清理过期缓存的线程 */
+    final private ScheduledExecutorService cleaner;
+
+    /** 异步调用监听器的线程池, 队列满时丢弃通知, 保证监听器不会拖慢缓存读写 */
+    final private ThreadPoolExecutor removalNotifier;
+
+    /** 因队列已满而丢弃的移除通知数量 */
+    final private AtomicLong droppedRemovalNotifications = new AtomicLong(0);
+
     /**
      * the self cleaning interval(in minutes)
      */
     private static final long CLEAN_INTERVAL = 30L;
 
+    /** 检查过期桶的间隔(毫秒) */
+    private static final long EXPIRE_CHECK_INTERVAL = 1000L;
+
+    /** 移除通知队列的容量 */
+    private static final int REMOVAL_QUEUE_CAPACITY = 10000;
+
+    /** 正则表达式的元字符, 不含这些字符的模版才能按字面前缀查询 */
+    private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}";
+
     public LocalMemoryCacheStorage(String keyPrefix) {
+        this(keyPrefix, ExpirePolicy.AFTER_WRITE);
+    }
+
+    /**
+     * @param keyPrefix    key的统一前缀
+     * @param expirePolicy 过期策略
+     */
+    public LocalMemoryCacheStorage(String keyPrefix, ExpirePolicy expirePolicy) {
+        this(keyPrefix, expirePolicy, 0);
+    }
+
+    /**
+     * @param keyPrefix    key的统一前缀
+     * @param expirePolicy 过期策略
+     * @param maxEntries   缓存数量上限, 超出后按过期时间从早到晚淘汰有时长的缓存, 小于等于0表示不限
+     */
+    public LocalMemoryCacheStorage(String keyPrefix, ExpirePolicy expirePolicy, int maxEntries) {
+        if (expirePolicy == null) {
+            throw new IllegalArgumentException("expirePolicy must not be null");
+        }
         this.keyPrefix = keyPrefix;
+        this.expirePolicy = expirePolicy;
+        this.maxEntries = maxEntries;
 
         // 如果将对象直接放入内存, 程序中获取缓存后, 有可能进行修改, 导致缓存中的值也相应改变
         // 这里将缓存对象进行json序列化, 保存的是json字符串, 每次获取缓存再将json反序列化为对象, 保持缓存对象的不变性
         serializer = RedisConfigHelper.newJsonRedisSerializer();
 
         // 设置定时任务, 以便清理过期的缓存
-        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1,
+        cleaner = new ScheduledThreadPoolExecutor(1,
                 new BasicThreadFactory.Builder().namingPattern("cache-cleaning-thread-%d").daemon(true).build());
-        executor.scheduleWithFixedDelay(cleaningTask(), CLEAN_INTERVAL, CLEAN_INTERVAL, TimeUnit.MINUTES);
+        cleaner.scheduleWithFixedDelay(this::expireDueEntries, EXPIRE_CHECK_INTERVAL, EXPIRE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        cleaner.scheduleWithFixedDelay(cleaningTask(), CLEAN_INTERVAL, CLEAN_INTERVAL, TimeUnit.MINUTES);
+
+        // 单线程保证同一个key的通知按移除的顺序送达, 空闲时线程自动退出
+        removalNotifier = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(REMOVAL_QUEUE_CAPACITY),
+                new BasicThreadFactory.Builder().namingPattern("cache-removal-thread-%d").daemon(true).build());
+        removalNotifier.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 注册缓存移除的监听器, 监听器在独立的线程中按移除的顺序调用。
+     * 通知积压超过队列容量时会被丢弃, 丢弃的数量见{@link #getDroppedRemovalNotifications()}
+     * @param listener
+     */
+    public void addRemovalListener(RemovalListener<V> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        removalListeners.add(listener);
+    }
+
+    /**
+     * 因队列已满而丢弃的移除通知数量
+     * @return
+     */
+    public long getDroppedRemovalNotifications() {
+        return droppedRemovalNotifications.get();
+    }
+
+    /**
+     * 停止清理线程, 已排队的移除通知会继续送达
+     */
+    @Override
+    public void close() {
+        cleaner.shutdownNow();
+        removalNotifier.shutdown();
     }
 
     @Override
@@ -72,6 +205,10 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
         return this.keyPrefix;
     }
 
+    public ExpirePolicy getExpirePolicy() {
+        return expirePolicy;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public V get(String key) {
@@ -83,9 +220,10 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
             return null;
         }
         if (wrapper.isExpired()) {
-            cache.remove(prefix(key));
+            removeEntry(prefix(key), wrapper, RemovalCause.EXPIRED);
             return null;
         }
+        accessed(wrapper);
         return (V) serializer.deserialize(wrapper.getCacheObject());
     }
 
@@ -94,7 +232,7 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
         if (key == null) {
             return;
         }
-        cache.remove(prefix(key));
+        removeEntry(prefix(key));
     }
 
     @Override
@@ -113,12 +251,23 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
         return key != null && cache.containsKey(prefix(key));
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>模版一律按正则表达式查找(不要求整体匹配), 不支持redis的通配符语法, {@code user:*}表示{@code user}后跟任意个冒号。
+     * 以{@code ^}锚定的字面前缀({@code ^user:123:}或{@code ^user:123:.*})通过有序的key索引查询, 耗时只与匹配的key数量有关;
+     * 其他正则表达式会扫描所有的key。需要加前缀时, 锚定的模版把前缀加在{@code ^}之后。</p>
+     */
     @Override
     public Set<String> keys(String pattern, boolean prefix) {
         if (StringUtils.isBlank(pattern)) {
             return new HashSet<>();
         }
-        String keyPattern = prefix ? prefix(pattern) : pattern;
+        String keyPattern = !prefix ? pattern
+                : pattern.startsWith("^") ? "^" + prefix(pattern.substring(1)) : prefix(pattern);
+        String literalPrefix = literalPrefix(keyPattern);
+        if (literalPrefix != null) {
+            return keysWithPrefix(literalPrefix);
+        }
         return cache.keySet().stream()
                 .filter(Pattern.compile(keyPattern).asPredicate())
                 .collect(Collectors.toSet());
@@ -127,14 +276,14 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
     @Override
     public void deleteWithPrex(Collection<String> keys) {
         if (keys != null && !keys.isEmpty()) {
-            keys.forEach(key -> cache.remove(prefix(key)));
+            keys.forEach(key -> removeEntry(prefix(key)));
         }
     }
 
     @Override
     public void delete(Collection<String> keys) {
         if (keys != null && !keys.isEmpty()) {
-            keys.forEach(cache::remove);
+            keys.forEach(this::removeEntry);
         }
     }
 
@@ -145,7 +294,7 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
         }
         byte[] wrapperValue = value == null ? null : serializer.serialize(value);
         CacheValueWrapper wrapper = new CacheValueWrapper(wrapperValue);
-        cache.put(prefix(key), wrapper);
+        putEntry(prefix(key), wrapper);
     }
 
     @Override
@@ -153,15 +302,36 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
         if (key == null) {
             return;
         }
-        byte[] wrapperValue = value == null ? null : serializer.serialize(value);
-        CacheValueWrapper wrapper;
-        if (timeout > 0 && unit != null) {
-            Long expire = unit.toSeconds(timeout);
-            wrapper = new CacheValueWrapper(wrapperValue, expire.intValue());
-        } else {
-            wrapper = new CacheValueWrapper(wrapperValue);
+        putEntry(prefix(key), newWrapper(value, timeout, unit));
+    }
+
+    @Override
+    public void set(String key, V value, long timeout, TimeUnit unit, Collection<String> tags) {
+        if (key == null) {
+            return;
+        }
+        set(key, value, timeout, unit);
+        if (tags != null) {
+            String prefixedKey = prefix(key);
+            tags.stream().filter(StringUtils::isNotBlank).forEach(tag -> tagIndex.compute(tag, (theTag, keys) -> {
+                Set<String> tagKeys = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                tagKeys.add(prefixedKey);
+                return tagKeys;
+            }));
+        }
+    }
+
+    @Override
+    public long invalidateTag(String tag) {
+        if (StringUtils.isBlank(tag)) {
+            return 0L;
+        }
+        Set<String> keys = tagIndex.remove(tag);
+        if (keys == null) {
+            return 0L;
         }
-        cache.put(prefix(key), wrapper);
+        delete(keys);
+        return keys.size();
     }
 
     @Override
@@ -171,68 +341,665 @@ public class LocalMemoryCacheStorage<V> implements CacheStorage<V> {
         }
         byte[] wrapperValue = value == null ? null : serializer.serialize(value);
         CacheValueWrapper wrapper = new CacheValueWrapper(wrapperValue);
-        return cache.putIfAbsent(prefix(key), wrapper) == null;
+        return putEntryIfAbsent(prefix(key), wrapper);
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, V value, long timeout, TimeUnit unit) {
+        if (key == null) {
+            return false;
+        }
+        return putEntryIfAbsent(prefix(key), newWrapper(value, timeout, unit));
+    }
+
+    @Override
+    public V getAndDelete(String key) {
+        if (key == null) {
+            return null;
+        }
+        return valueOf(removeEntry(prefix(key)));
+    }
+
+    @Override
+    public V getAndExpire(String key, long timeout, TimeUnit unit) {
+        if (key == null) {
+            return null;
+        }
+        long ttlMillis = unit.toMillis(timeout);
+        if (ttlMillis <= 0) {
+            // 与redis的PEXPIRE一致, 非正数的时长直接删除key
+            return getAndDelete(key);
+        }
+        CacheValueWrapper wrapper = cache.computeIfPresent(prefix(key), (theKey, oldWrapper) -> {
+            if (oldWrapper.isExpired()) {
+                keyIndex.remove(theKey);
+                notifyRemoval(theKey, oldWrapper, RemovalCause.EXPIRED);
+                return null;
+            }
+            oldWrapper.setExpireMillis(ttlMillis);
+            return oldWrapper;
+        });
+        scheduleExpiry(prefix(key), wrapper);
+        return valueOf(wrapper);
+    }
+
+    @Override
+    public long getVersion(String key) {
+        if (key == null) {
+            return 0L;
+        }
+        String prefixedKey = prefix(key);
+        CasVersion version = versions.get(prefixedKey);
+        return version == null || version.isExpired(prefixedKey) ? 0L : version.value;
+    }
+
+    @Override
+    public boolean compareAndSet(String key, long expectedVersion, V value) {
+        if (key == null) {
+            return false;
+        }
+        byte[] wrapperValue = value == null ? null : serializer.serialize(value);
+        boolean[] swapped = new boolean[1];
+        // 以版本号的compute串行化同一个key的compareAndSet
+        versions.compute(prefix(key), (theKey, current) -> {
+            long currentVersion = current == null || current.isExpired(theKey) ? 0L : current.value;
+            if (currentVersion != expectedVersion) {
+                return current;
+            }
+            CacheValueWrapper wrapper = cache.compute(theKey, (cacheKey, oldWrapper) -> {
+                keyIndex.add(cacheKey);
+                notifyReplaced(cacheKey, oldWrapper);
+                return oldWrapper == null || oldWrapper.isExpired()
+                        ? new CacheValueWrapper(wrapperValue) : oldWrapper.withCacheObject(wrapperValue);
+            });
+            swapped[0] = true;
+            return new CasVersion(currentVersion + 1, wrapper.getDeadline());
+        });
+        return swapped[0];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, V> getFields(String key, Collection<String> fields) {
+        Map<String, V> result = new LinkedHashMap<>();
+        if (key == null) {
+            return result;
+        }
+        CacheValueWrapper wrapper = cache.get(prefix(key));
+        if (wrapper == null || !wrapper.isHash() || wrapper.isExpired()) {
+            return result;
+        }
+        accessed(wrapper);
+        Collection<String> fieldNames = fields == null || fields.isEmpty() ? wrapper.getFields().keySet() : fields;
+        fieldNames.forEach(field -> {
+            byte[] value = wrapper.getFields().get(field);
+            if (value != null) {
+                result.put(field, (V) serializer.deserialize(value));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void setFields(String key, Map<String, V> fields) {
+        if (key == null || fields == null || fields.isEmpty()) {
+            return;
+        }
+        Map<String, byte[]> serializedFields = new LinkedHashMap<>();
+        fields.forEach((field, value) -> serializedFields.put(field, serializer.serialize(value)));
+        cache.compute(prefix(key), (theKey, oldWrapper) -> {
+            CacheValueWrapper wrapper = hashWrapper(theKey, oldWrapper);
+            wrapper.getFields().putAll(serializedFields);
+            return wrapper;
+        });
+        evictIfFull();
+    }
+
+    @Override
+    public Long incrementField(String key, String field, long delta) {
+        long[] valueHolder = new long[1];
+        cache.compute(prefix(key), (theKey, oldWrapper) -> {
+            CacheValueWrapper wrapper = hashWrapper(theKey, oldWrapper);
+            wrapper.getFields().compute(field, (theField, oldValue) -> {
+                long value = delta;
+                if (oldValue != null) {
+                    value += ((Number) serializer.deserialize(oldValue)).longValue();
+                }
+                valueHolder[0] = value;
+                return serializer.serialize(value);
+            });
+            return wrapper;
+        });
+        evictIfFull();
+        return valueHolder[0];
+    }
+
+    @Override
+    public void setChunked(String key, InputStream data, long timeout, TimeUnit unit) {
+        if (key == null || data == null) {
+            return;
+        }
+        List<byte[]> chunks = new ArrayList<>();
+        try {
+            byte[] chunk;
+            while ((chunk = ChunkedInputStream.readChunk(data, RedisChunkedValueSupport.DEFAULT_CHUNK_SIZE)) != null) {
+                chunks.add(chunk);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("error reading chunked cache value", e);
+        }
+        long ttlMillis = timeout > 0 && unit != null ? unit.toMillis(timeout) : -1L;
+        putEntry(prefix(key), CacheValueWrapper.ofChunks(chunks.toArray(new byte[0][]), ttlMillis));
+    }
+
+    @Override
+    public InputStream getChunked(String key) {
+        if (key == null) {
+            return null;
+        }
+        CacheValueWrapper wrapper = cache.get(prefix(key));
+        if (wrapper == null || wrapper.getChunks() == null || wrapper.isExpired()) {
+            return null;
+        }
+        accessed(wrapper);
+        byte[][] chunks = wrapper.getChunks();
+        return new ChunkedInputStream(chunks.length, index -> chunks[index]);
+    }
+
+    @Override
+    public boolean expireChunked(String key, long timeout, TimeUnit unit) {
+        // 本地的分块都保存在同一个缓存值中, 失效时间天然是一个整体
+        return expire(key, timeout, unit);
+    }
+
+    @Override
+    public void deleteChunked(String key) {
+        delete(key);
+    }
+
+    @Override
+    public boolean acquirePermit(String key, String holder, int permits, long leaseTime, TimeUnit unit) {
+        if (key == null || holder == null) {
+            return false;
+        }
+        long leaseMillis = unit.toMillis(leaseTime);
+        boolean[] acquired = new boolean[1];
+        permitLeases.compute(prefix(key), (theKey, leases) -> {
+            long now = System.currentTimeMillis();
+            Map<String, Long> holders = leases == null ? new HashMap<>() : leases;
+            holders.values().removeIf(expireAt -> expireAt <= now);
+            if (holders.containsKey(holder) || holders.size() < permits) {
+                holders.put(holder, now + leaseMillis);
+                acquired[0] = true;
+            }
+            return holders.isEmpty() ? null : holders;
+        });
+        return acquired[0];
+    }
+
+    @Override
+    public boolean releasePermit(String key, String holder) {
+        if (key == null || holder == null) {
+            return false;
+        }
+        boolean[] released = new boolean[1];
+        permitLeases.computeIfPresent(prefix(key), (theKey, holders) -> {
+            Long expireAt = holders.remove(holder);
+            released[0] = expireAt != null && expireAt > System.currentTimeMillis();
+            return holders.isEmpty() ? null : holders;
+        });
+        return released[0];
+    }
+
+    @Override
+    public Long countDown(String key) {
+        if (key == null) {
+            return null;
+        }
+        Long[] countHolder = new Long[1];
+        cache.computeIfPresent(prefix(key), (theKey, oldWrapper) -> {
+            if (oldWrapper.isExpired() || oldWrapper.getCacheObject() == null) {
+                return oldWrapper;
+            }
+            Object value = serializer.deserialize(oldWrapper.getCacheObject());
+            long current = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+            if (current <= 0) {
+                // 已归零的计数器保留为0直到失效
+                countHolder[0] = 0L;
+                return oldWrapper;
+            }
+            long count = current - 1;
+            countHolder[0] = count;
+            notifyReplaced(theKey, oldWrapper);
+            // 与redis的DECR一致, 保留计数器原有的失效时间
+            return oldWrapper.withCacheObject(serializer.serialize(count));
+        });
+        return countHolder[0];
     }
 
     @Override
     public boolean expire(String key, long timeout, TimeUnit unit) {
+        long ttlMillis = unit.toMillis(timeout);
+        if (ttlMillis <= 0) {
+            // 与redis的PEXPIRE一致, 非正数的时长直接删除key
+            CacheValueWrapper removed = removeEntry(prefix(key));
+            return removed != null && !removed.isExpired();
+        }
         CacheValueWrapper wrapper = cache.get(prefix(key));
         if (wrapper == null || wrapper.isExpired()) {
             return false;
         }
-        Long expire = unit.toSeconds(timeout);
-        wrapper.setExpire(expire.intValue());
+        wrapper.setExpireMillis(ttlMillis);
+        scheduleExpiry(prefix(key), wrapper);
         return true;
     }
 
+    /**
+     * 限制缓存的存活时间: 缓存永不过期或剩余的存活时间超过上限时, 改为上限
+     * @param key
+     * @param maxTtl 存活时间上限(秒)
+     */
+    void limitExpire(String key, long maxTtl) {
+        if (key == null) {
+            return;
+        }
+        CacheValueWrapper wrapper = cache.get(prefix(key));
+        if (wrapper == null || wrapper.isExpired()) {
+            return;
+        }
+        long deadline = wrapper.getDeadline();
+        if (deadline == 0L || deadline - System.currentTimeMillis() > TimeUnit.SECONDS.toMillis(maxTtl)) {
+            wrapper.setExpireMillis(TimeUnit.SECONDS.toMillis(maxTtl));
+            scheduleExpiry(prefix(key), wrapper);
+        }
+    }
+
     @Override
     public Long increment(String key, int delta) {
-        String prefixedKey = prefix(key);
-        StringBuffer valueBuffer = new StringBuffer();
-        CacheValueWrapper wrapper = cache.get(prefixedKey);
-        if (wrapper == null) {
-            valueBuffer.append(delta);
-            byte[] wrapperValue = serializer.serialize(delta);
-            // 若设置成功则返回null
-            if (cache.putIfAbsent(prefixedKey, new CacheValueWrapper(wrapperValue)) != null) {
-                try {
-                    Thread.sleep(300L);
-                    // 重试
-                    increment(key, delta);
-                } catch (InterruptedException e) {
-                    log.error(">> 设置计数器失败: {}", e.getMessage(), e);
-                }
-            }
-        } else {
-            cache.computeIfPresent(prefixedKey, (theKey, oldWrapper) -> {
-                Integer currentValue = (Integer)serializer.deserialize(oldWrapper.getCacheObject());
-                int value = currentValue + delta;
-                valueBuffer.append(value);
-                byte[] newValue = serializer.serialize(value);
-                return new CacheValueWrapper(newValue);
-            });
+        return incrementBy(prefix(key), delta);
+    }
+
+    @Override
+    public Map<String, Long> incrementAll(Map<String, Long> deltas) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (deltas != null) {
+            deltas.forEach((key, delta) -> result.put(key, incrementBy(prefix(key), delta)));
         }
-        return Long.parseLong(valueBuffer.toString());
+        return result;
+    }
+
+    /**
+     * 原子地增长计数器, 计数器不存在或已过期时从0开始
+     * @param prefixedKey 带前缀的key
+     * @param delta
+     * @return 增长后的值
+     */
+    private long incrementBy(String prefixedKey, long delta) {
+        long[] valueHolder = new long[1];
+        cache.compute(prefixedKey, (theKey, oldWrapper) -> {
+            long value = delta;
+            boolean exists = oldWrapper != null && !oldWrapper.isExpired() && oldWrapper.getCacheObject() != null;
+            if (exists) {
+                value += ((Number) serializer.deserialize(oldWrapper.getCacheObject())).longValue();
+            }
+            valueHolder[0] = value;
+            keyIndex.add(theKey);
+            notifyReplaced(theKey, oldWrapper);
+            // 与redis的INCRBY一致, 保留计数器原有的失效时间
+            byte[] serialized = serializer.serialize(value);
+            return exists ? oldWrapper.withCacheObject(serialized) : new CacheValueWrapper(serialized);
+        });
+        evictIfFull();
+        return valueHolder[0];
     }
 
     private String prefix(String key) {
         return this.keyPrefix + key;
     }
 
+    /**
+     * 写入缓存, 所有对cache的写入都通过此类方法, 以便同步维护key索引
+     */
+    private void putEntry(String prefixedKey, CacheValueWrapper wrapper) {
+        cache.compute(prefixedKey, (theKey, oldWrapper) -> {
+            keyIndex.add(theKey);
+            notifyReplaced(theKey, oldWrapper);
+            return wrapper;
+        });
+        scheduleExpiry(prefixedKey, wrapper);
+        evictIfFull();
+    }
+
+    /**
+     * 仅当key不存在或已过期时写入缓存
+     * @return 写入成功则返回{@code true}
+     */
+    private boolean putEntryIfAbsent(String prefixedKey, CacheValueWrapper wrapper) {
+        boolean added = cache.compute(prefixedKey, (theKey, oldWrapper) -> {
+            if (oldWrapper != null && !oldWrapper.isExpired()) {
+                return oldWrapper;
+            }
+            keyIndex.add(theKey);
+            notifyReplaced(theKey, oldWrapper);
+            return wrapper;
+        }) == wrapper;
+        if (added) {
+            scheduleExpiry(prefixedKey, wrapper);
+            evictIfFull();
+        }
+        return added;
+    }
+
+    /**
+     * 读取缓存后调用, 访问后过期的策略下从当前时间起重新计算过期时间
+     */
+    private void accessed(CacheValueWrapper wrapper) {
+        if (expirePolicy == ExpirePolicy.AFTER_ACCESS) {
+            wrapper.touch();
+        }
+    }
+
+    /**
+     * 把有时长的缓存登记到过期时间所在的桶, 已检查过的桶不会再检查, 此时登记到下一个桶
+     */
+    private void scheduleExpiry(String prefixedKey, CacheValueWrapper wrapper) {
+        if (wrapper == null || wrapper.getDeadline() <= 0) {
+            return;
+        }
+        long bucket = Math.max(TimeUnit.MILLISECONDS.toSeconds(wrapper.getDeadline()), expiryCursor + 1);
+        expiryBuckets.computeIfAbsent(bucket, theBucket -> ConcurrentHashMap.newKeySet()).add(prefixedKey);
+    }
+
+    /**
+     * 缓存数量超过上限时, 从最早的过期桶开始淘汰, 直到回到上限以内;
+     * 淘汰顺序与过期检查一样按秒区分, 同一秒内到期的缓存之间不保证先后; 同一时刻只有一个线程淘汰, 其他线程不等待, 并发写入时数量可能短暂超出上限
+     */
+    private void evictIfFull() {
+        if (maxEntries <= 0 || cache.size() <= maxEntries || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        int count = 0;
+        try {
+            while (cache.size() > maxEntries) {
+                Long earliest = null;
+                for (Long bucket : expiryBuckets.keySet()) {
+                    if (earliest == null || bucket < earliest) {
+                        earliest = bucket;
+                    }
+                }
+                if (earliest == null) {
+                    // 剩下的都是没有时长的缓存
+                    break;
+                }
+                Set<String> keys = expiryBuckets.remove(earliest);
+                if (keys == null) {
+                    continue;
+                }
+                for (String key : keys) {
+                    CacheValueWrapper wrapper = cache.get(key);
+                    if (wrapper == null) {
+                        continue;
+                    }
+                    long deadline = wrapper.getDeadline();
+                    // 已延长时长的缓存的登记已失效, 重新登记到新的桶
+                    if (cache.size() > maxEntries && deadline > 0 && TimeUnit.MILLISECONDS.toSeconds(deadline) <= earliest) {
+                        if (removeEntry(key, wrapper, RemovalCause.SIZE)) {
+                            count++;
+                        }
+                    } else {
+                        scheduleExpiry(key, wrapper);
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+        if (count > 0 && log.isDebugEnabled()) {
+            log.debug(">> 内存缓存超出上限{}, 淘汰了{}个缓存", maxEntries, count);
+        }
+    }
+
+    /**
+     * 检查从上次检查到当前时间之间到期的桶, 由清理线程每秒调用
+     */
+    private void expireDueEntries() {
+        try {
+            long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            int count = 0;
+            for (long bucket = expiryCursor + 1; bucket <= now; bucket++) {
+                // 先推进游标再取出桶, 之后的登记都会进入后面的桶
+                expiryCursor = bucket;
+                count += expireBucket(expiryBuckets.remove(bucket));
+            }
+            if (count > 0 && log.isDebugEnabled()) {
+                log.debug(">> 清理了{}个过期的内存缓存", count);
+            }
+        } catch (Exception e) {
+            log.error(">> 清理过期的内存缓存出错", e);
+        }
+    }
+
+    /**
+     * 删除桶中已过期的缓存, 被延长了时长的缓存重新登记到新的桶
+     * @return 删除的缓存数量
+     */
+    private int expireBucket(Set<String> keys) {
+        if (keys == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String key : keys) {
+            CacheValueWrapper wrapper = cache.get(key);
+            if (wrapper == null) {
+                continue;
+            }
+            if (wrapper.isExpired()) {
+                if (removeEntry(key, wrapper, RemovalCause.EXPIRED)) {
+                    count++;
+                }
+            } else {
+                scheduleExpiry(key, wrapper);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 删除缓存
+     * @return 被删除的缓存值, key不存在时返回{@code null}
+     */
+    private CacheValueWrapper removeEntry(String prefixedKey) {
+        CacheValueWrapper[] removed = new CacheValueWrapper[1];
+        cache.computeIfPresent(prefixedKey, (theKey, oldWrapper) -> {
+            keyIndex.remove(theKey);
+            removed[0] = oldWrapper;
+            notifyRemoval(theKey, oldWrapper, oldWrapper.isExpired() ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT);
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 在cache的compute中调用, 沿用未过期的hash结构缓存值, 否则创建新的
+     */
+    private CacheValueWrapper hashWrapper(String prefixedKey, CacheValueWrapper oldWrapper) {
+        if (oldWrapper != null && oldWrapper.isHash() && !oldWrapper.isExpired()) {
+            return oldWrapper;
+        }
+        keyIndex.add(prefixedKey);
+        notifyReplaced(prefixedKey, oldWrapper);
+        return CacheValueWrapper.ofHash();
+    }
+
+    private CacheValueWrapper newWrapper(V value, long timeout, TimeUnit unit) {
+        byte[] wrapperValue = value == null ? null : serializer.serialize(value);
+        if (timeout > 0 && unit != null) {
+            return new CacheValueWrapper(wrapperValue, unit.toMillis(timeout));
+        }
+        return new CacheValueWrapper(wrapperValue);
+    }
+
+    /**
+     * 反序列化缓存值, 已过期或空值返回{@code null}
+     */
+    @SuppressWarnings("unchecked")
+    private V valueOf(CacheValueWrapper wrapper) {
+        if (wrapper == null || wrapper.isExpired() || wrapper.getCacheObject() == null) {
+            return null;
+        }
+        return (V) serializer.deserialize(wrapper.getCacheObject());
+    }
+
+    /**
+     * 仅当key对应的仍是指定的缓存值时才删除, 避免误删并发写入的新值
+     * @param cause 移除的原因
+     * @return 删除成功则返回{@code true}
+     */
+    private boolean removeEntry(String prefixedKey, CacheValueWrapper expected, RemovalCause cause) {
+        boolean[] removed = new boolean[1];
+        cache.computeIfPresent(prefixedKey, (theKey, oldWrapper) -> {
+            if (oldWrapper != expected) {
+                return oldWrapper;
+            }
+            keyIndex.remove(theKey);
+            removed[0] = true;
+            notifyRemoval(theKey, oldWrapper, cause);
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 在cache的compute中调用, 旧值被覆盖时发出通知, 已过期的旧值视为过期移除
+     */
+    private void notifyReplaced(String prefixedKey, CacheValueWrapper oldWrapper) {
+        if (oldWrapper != null) {
+            notifyRemoval(prefixedKey, oldWrapper, oldWrapper.isExpired() ? RemovalCause.EXPIRED : RemovalCause.REPLACED);
+        }
+    }
+
+    /**
+     * 把移除通知提交给通知线程, 反序列化和监听器的执行都在通知线程中进行
+     */
+    private void notifyRemoval(String prefixedKey, CacheValueWrapper wrapper, RemovalCause cause) {
+        if (removalListeners.isEmpty()) {
+            return;
+        }
+        try {
+            removalNotifier.execute(() -> dispatchRemoval(prefixedKey, wrapper, cause));
+        } catch (RejectedExecutionException e) {
+            if (droppedRemovalNotifications.incrementAndGet() % REMOVAL_QUEUE_CAPACITY == 1) {
+                log.warn(">> 缓存移除通知积压, 已丢弃{}个通知", droppedRemovalNotifications.get());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatchRemoval(String prefixedKey, CacheValueWrapper wrapper, RemovalCause cause) {
+        String key = prefixedKey.startsWith(keyPrefix) ? prefixedKey.substring(keyPrefix.length()) : prefixedKey;
+        V value = null;
+        try {
+            byte[] cacheObject = wrapper.getCacheObject();
+            value = cacheObject == null ? null : (V) serializer.deserialize(cacheObject);
+        } catch (Exception e) {
+            log.error(">> 缓存移除通知反序列化出错, key: {}", key, e);
+        }
+        for (RemovalListener<V> listener : removalListeners) {
+            try {
+                listener.onRemoval(key, value, cause);
+            } catch (Exception e) {
+                log.error(">> 缓存移除监听器执行出错, key: {}, cause: {}", key, cause, e);
+            }
+        }
+    }
+
+    /**
+     * 从有序的key索引中查询指定前缀的key
+     */
+    private Set<String> keysWithPrefix(String literalPrefix) {
+        Set<String> keys = new HashSet<>();
+        for (String key : keyIndex.tailSet(literalPrefix)) {
+            if (!key.startsWith(literalPrefix)) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * 解析以{@code ^}锚定的字面前缀的正则: {@code ^abc}, {@code ^abc.*}
+     * @return 模版等价于前缀匹配时返回该前缀, 否则返回{@code null}
+     */
+    private static String literalPrefix(String pattern) {
+        if (!pattern.startsWith("^")) {
+            return null;
+        }
+        String literal = pattern.endsWith(".*") ? pattern.substring(1, pattern.length() - 2) : pattern.substring(1);
+        for (int i = 0; i < literal.length(); i++) {
+            if (REGEX_META_CHARS.indexOf(literal.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        return literal;
+    }
+
     private Runnable cleaningTask() {
         return () -> {
             log.info(">> 开始执行内存缓存清理定时任务...");
             AtomicInteger count = new AtomicInteger(0);
             long total = cache.mappingCount();
-            cache.keySet().stream().filter(key -> cache.get(key).isExpired())
-                    .forEach(key -> {
-                        // double check if it's expired or not
-                        if (cache.get(key).isExpired()) {
-                            cache.remove(key);
-                            count.getAndIncrement();
-                        }
-                    });
+            cache.forEach((key, wrapper) -> {
+                // double check if it's expired or not
+                if (wrapper.isExpired() && removeEntry(key, wrapper, RemovalCause.EXPIRED)) {
+                    count.getAndIncrement();
+                }
+            });
+            // 与游标推进并发登记而落在已检查过的桶中的缓存
+            long cursor = expiryCursor;
+            expiryBuckets.keySet().stream().filter(bucket -> bucket <= cursor)
+                    .forEach(bucket -> expireBucket(expiryBuckets.remove(bucket)));
+            // 清理随缓存过期而失效的版本号
+            versions.keySet().forEach(key -> versions.computeIfPresent(key,
+                    (theKey, version) -> version.isExpired(theKey) ? null : version));
+            // 清理已到期的信号量租约
+            permitLeases.keySet().forEach(key -> permitLeases.computeIfPresent(key, (theKey, holders) -> {
+                long now = System.currentTimeMillis();
+                holders.values().removeIf(expireAt -> expireAt <= now);
+                return holders.isEmpty() ? null : holders;
+            }));
+            // 清理标签索引中已不存在的key
+            tagIndex.keySet().forEach(tag -> tagIndex.computeIfPresent(tag, (theTag, keys) -> {
+                keys.removeIf(key -> !cache.containsKey(key));
+                return keys.isEmpty() ? null : keys;
+            }));
             log.info(">> 内存缓存清理定时任务执行结束, 共有{}个缓存, 清理了{}个.", total, count.intValue());
         };
     }
+
+    /**
+     * compareAndSet的版本号及其失效时间
+     */
+    private final class CasVersion {
+        final long value;
+
+        /** 失效的时间点(毫秒), 取compareAndSet时缓存的过期时间, 0表示永不失效 */
+        final long deadline;
+
+        CasVersion(long value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 到了失效时间且缓存已不存在或已过期时版本号失效; 缓存的时长被延长时版本号随缓存保留
+         */
+        boolean isExpired(String prefixedKey) {
+            if (deadline <= 0 || System.currentTimeMillis() <= deadline) {
+                return false;
+            }
+            CacheValueWrapper wrapper = cache.get(prefixedKey);
+            return wrapper == null || wrapper.isExpired();
+        }
+    }
 }
@@ -1,13 +1,23 @@
 package com.mengcc.cache.storage.impl;
 
+import com.mengcc.cache.script.RedisScriptRegistry;
 import com.mengcc.cache.storage.CacheStorage;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -24,10 +34,19 @@ public class RedisCacheStorage implements CacheStorage<Object> {
 
     final private RedisTemplate<String, Object> redisTemplate;
     final private String keyPrefix;
+    final private RedisChunkedValueSupport chunkedValueSupport;
+
+    /** 标签索引key的前缀, 位于缓存key前缀之后 */
+    private static final String TAG_KEY_PREFIX = "tag:";
+
+    /** 版本号key的后缀, 位于缓存key之后 */
+    private static final String VERSION_KEY_SUFFIX = ":version";
 
     public RedisCacheStorage(String keyPrefix, RedisTemplate<String, Object> redisTemplate) {
         this.keyPrefix = keyPrefix;
         this.redisTemplate = redisTemplate;
+        this.chunkedValueSupport = new RedisChunkedValueSupport(redisTemplate, RedisChunkedValueSupport.DEFAULT_CHUNK_SIZE);
+        RedisScriptRegistry.preload(redisTemplate);
     }
 
     @Override
@@ -143,6 +162,207 @@ public class RedisCacheStorage implements CacheStorage<Object> {
         return redisTemplate.opsForValue().increment(prefix(key), delta);
     }
 
+    @Override
+    public Map<String, Long> incrementAll(Map<String, Long> deltas) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (deltas == null || deltas.isEmpty()) {
+            return result;
+        }
+        List<String> keys = new ArrayList<>(deltas.keySet());
+        RedisSerializer<String> keySerializer = redisTemplate.getStringSerializer();
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> connection.incrBy(keySerializer.serialize(prefix(key)), deltas.get(key)));
+            return null;
+        });
+        for (int i = 0; i < keys.size(); i++) {
+            result.put(keys.get(i), (Long) values.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public void set(String key, Object value, long timeout, TimeUnit unit, Collection<String> tags) {
+        if (StringUtils.isBlank(key)) {
+            return;
+        }
+        List<String> scriptKeys = new ArrayList<>();
+        scriptKeys.add(prefix(key));
+        if (tags != null) {
+            tags.stream().filter(StringUtils::isNotBlank).distinct().map(this::tagKey).forEach(scriptKeys::add);
+        }
+        long ttl = timeout > 0 && unit != null ? unit.toMillis(timeout) : 0L;
+        redisTemplate.execute(RedisScriptRegistry.SET_WITH_TAGS, scriptKeys, value, ttl);
+    }
+
+    @Override
+    public long invalidateTag(String tag) {
+        if (StringUtils.isBlank(tag)) {
+            return 0L;
+        }
+        Long count = redisTemplate.execute(RedisScriptRegistry.INVALIDATE_TAG, Collections.singletonList(tagKey(tag)));
+        return count == null ? 0L : count;
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, Object value, long timeout, TimeUnit unit) {
+        if (StringUtils.isBlank(key)) {
+            return false;
+        }
+        // SET NX PX本身就是原子操作, 无需脚本
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(prefix(key), value, timeout, unit));
+    }
+
+    @Override
+    public Object getAndDelete(String key) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        return redisTemplate.execute(RedisScriptRegistry.GET_AND_DELETE, Collections.singletonList(prefix(key)));
+    }
+
+    @Override
+    public Object getAndExpire(String key, long timeout, TimeUnit unit) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        return redisTemplate.execute(RedisScriptRegistry.GET_AND_EXPIRE, Collections.singletonList(prefix(key)),
+                unit.toMillis(timeout));
+    }
+
+    @Override
+    public long getVersion(String key) {
+        if (StringUtils.isBlank(key)) {
+            return 0L;
+        }
+        Object version = redisTemplate.opsForValue().get(versionKey(key));
+        return version == null ? 0L : ((Number) version).longValue();
+    }
+
+    @Override
+    public boolean compareAndSet(String key, long expectedVersion, Object value) {
+        if (StringUtils.isBlank(key)) {
+            return false;
+        }
+        Long result = redisTemplate.execute(RedisScriptRegistry.COMPARE_AND_SET,
+                Arrays.asList(prefix(key), versionKey(key)), expectedVersion, value);
+        return result != null && result == 1L;
+    }
+
+    @Override
+    public Map<String, Object> getFields(String key, Collection<String> fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (StringUtils.isBlank(key)) {
+            return result;
+        }
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+        byte[] rawKey = stringSerializer.serialize(prefix(key));
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            if (fields == null || fields.isEmpty()) {
+                Map<byte[], byte[]> entries = connection.hGetAll(rawKey);
+                if (entries != null) {
+                    entries.forEach((field, value) -> result.put(stringSerializer.deserialize(field),
+                            valueSerializer.deserialize(value)));
+                }
+                return null;
+            }
+            List<String> fieldList = new ArrayList<>(fields);
+            List<byte[]> values = connection.hMGet(rawKey,
+                    fieldList.stream().map(stringSerializer::serialize).toArray(byte[][]::new));
+            for (int i = 0; values != null && i < fieldList.size(); i++) {
+                if (values.get(i) != null) {
+                    result.put(fieldList.get(i), valueSerializer.deserialize(values.get(i)));
+                }
+            }
+            return null;
+        });
+        return result;
+    }
+
+    @Override
+    public void setFields(String key, Map<String, Object> fields) {
+        if (StringUtils.isBlank(key) || fields == null || fields.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+        Map<byte[], byte[]> rawFields = new LinkedHashMap<>();
+        fields.forEach((field, value) -> rawFields.put(stringSerializer.serialize(field), valueSerializer.serialize(value)));
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.hMSet(stringSerializer.serialize(prefix(key)), rawFields);
+            return null;
+        });
+    }
+
+    @Override
+    public Long incrementField(String key, String field, long delta) {
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        return redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.hIncrBy(stringSerializer.serialize(prefix(key)), stringSerializer.serialize(field), delta));
+    }
+
+    @Override
+    public void setChunked(String key, InputStream data, long timeout, TimeUnit unit) {
+        if (StringUtils.isBlank(key) || data == null) {
+            return;
+        }
+        chunkedValueSupport.set(prefix(key), data, timeout, unit);
+    }
+
+    @Override
+    public InputStream getChunked(String key) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        return chunkedValueSupport.get(prefix(key));
+    }
+
+    @Override
+    public boolean expireChunked(String key, long timeout, TimeUnit unit) {
+        if (StringUtils.isBlank(key)) {
+            return false;
+        }
+        return chunkedValueSupport.expire(prefix(key), timeout, unit);
+    }
+
+    @Override
+    public void deleteChunked(String key) {
+        if (StringUtils.isBlank(key)) {
+            return;
+        }
+        chunkedValueSupport.delete(prefix(key));
+    }
+
+    @Override
+    public boolean acquirePermit(String key, String holder, int permits, long leaseTime, TimeUnit unit) {
+        if (StringUtils.isBlank(key) || StringUtils.isBlank(holder)) {
+            return false;
+        }
+        Long result = redisTemplate.execute(RedisScriptRegistry.ACQUIRE_PERMIT, Collections.singletonList(prefix(key)),
+                holder, permits, unit.toMillis(leaseTime));
+        return result != null && result == 1L;
+    }
+
+    @Override
+    public boolean releasePermit(String key, String holder) {
+        if (StringUtils.isBlank(key) || StringUtils.isBlank(holder)) {
+            return false;
+        }
+        Long removed = redisTemplate.opsForZSet().remove(prefix(key), holder);
+        return removed != null && removed > 0;
+    }
+
+    @Override
+    public Long countDown(String key) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        Long count = redisTemplate.execute(RedisScriptRegistry.COUNT_DOWN, Collections.singletonList(prefix(key)));
+        return count == null || count < 0 ? null : count;
+    }
+
     @Override
     public boolean isRedis() {
         return true;
@@ -161,4 +381,12 @@ public class RedisCacheStorage implements CacheStorage<Object> {
     private String prefix(String key) {
         return keyPrefix + key;
     }
+
+    private String versionKey(String key) {
+        return keyPrefix + key + VERSION_KEY_SUFFIX;
+    }
+
+    private String tagKey(String tag) {
+        return keyPrefix + TAG_KEY_PREFIX + tag;
+    }
 }
@@ -0,0 +1,261 @@
+package com.mengcc.cache.storage.impl;
+
+import com.mengcc.cache.script.RedisScriptRegistry;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis缓存分块保存大缓存值的实现, 由{@link RedisCacheStorage}和{@link StringRedisCacheStorage}共用。
+ * <p>数据按固定大小切分后保存在多个分块key中, 每一批分块通过一次pipeline写入, 全部写完后再原子地替换清单key,
+ * 清单记录了分块的批次号、数量和总长度, 读取时先读清单再逐块读取, 同一时刻只在内存中保留一个分块。
+ * 集群连接不支持pipeline, 此时分块命令逐条发送。</p>
+ * <p>分块先以临时的存活时间写入, 清单替换成功后才改为正式的存活时间, 写入中途失败或进程退出时分块最终都会过期。
+ * 覆盖写入使用新的批次号, 不会与正在读取的旧批次冲突, 替换清单时取得的旧批次(包括并发写入中先提交的一方)在宽限期后自动过期;
+ * 分块的存活时间比清单多一个宽限期, 保证清单有效时分块一定存在。</p>
+ *
+ * @author zhouzq
+ * @date 2026/10/19
+ */
+class RedisChunkedValueSupport {
+
+    /** 默认分块大小(字节) */
+    static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+
+    /** 每次pipeline写入的分块数量 */
+    private static final int CHUNKS_PER_PIPELINE = 8;
+
+    /** 分块比清单多存活的宽限期(毫秒), 覆盖写入后旧批次的分块也在宽限期后过期 */
+    private static final long CHUNK_GRACE_MILLIS = 60_000L;
+
+    /** 清单提交前分块的临时存活时间(毫秒), 应长于写入一个大缓存值的最长耗时 */
+    private static final long CHUNK_PENDING_MILLIS = 600_000L;
+
+    private final RedisTemplate<String, ?> redisTemplate;
+    private final int chunkSize;
+
+    RedisChunkedValueSupport(RedisTemplate<String, ?> redisTemplate, int chunkSize) {
+        this.redisTemplate = redisTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    void set(String manifestKey, InputStream data, long timeout, TimeUnit unit) {
+        long ttl = timeout > 0 && unit != null ? unit.toMillis(timeout) : 0L;
+        String generation = UUID.randomUUID().toString().replace("-", "");
+
+        int chunkCount = 0;
+        long totalLength = 0L;
+        List<byte[]> pending = new ArrayList<>(CHUNKS_PER_PIPELINE);
+        Manifest manifest;
+        Manifest oldManifest;
+        try {
+            byte[] chunk;
+            while ((chunk = ChunkedInputStream.readChunk(data, chunkSize)) != null) {
+                pending.add(chunk);
+                totalLength += chunk.length;
+                if (pending.size() >= CHUNKS_PER_PIPELINE) {
+                    writeChunks(manifestKey, generation, chunkCount, pending);
+                    chunkCount += pending.size();
+                    pending.clear();
+                }
+            }
+            if (!pending.isEmpty()) {
+                writeChunks(manifestKey, generation, chunkCount, pending);
+                chunkCount += pending.size();
+                pending.clear();
+            }
+            manifest = new Manifest(generation, chunkCount, totalLength);
+            oldManifest = swapManifest(manifestKey, manifest, ttl);
+        } catch (IOException | RuntimeException e) {
+            // 清单没有提交, 删除已写入的分块; 删除失败时分块在临时存活时间后过期
+            deleteChunksQuietly(manifestKey, generation, chunkCount + pending.size());
+            if (e instanceof IOException) {
+                throw new UncheckedIOException("error reading chunked cache value", (IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            openPipeline(connection);
+            // 清单已提交, 分块改为正式的存活时间
+            for (int i = 0; i < manifest.chunkCount; i++) {
+                byte[] rawChunkKey = rawKey(chunkKey(manifestKey, manifest.generation, i));
+                if (ttl > 0) {
+                    connection.pExpire(rawChunkKey, ttl + CHUNK_GRACE_MILLIS);
+                } else {
+                    connection.persist(rawChunkKey);
+                }
+            }
+            // 旧批次的分块保留一个宽限期, 让正在读取的线程读完
+            if (oldManifest != null && !oldManifest.generation.equals(manifest.generation)) {
+                expireChunks(connection, manifestKey, oldManifest, CHUNK_GRACE_MILLIS);
+            }
+            closePipeline(connection);
+            return null;
+        });
+    }
+
+    InputStream get(String manifestKey) {
+        Manifest manifest = readManifest(manifestKey);
+        if (manifest == null) {
+            return null;
+        }
+        return new ChunkedInputStream(manifest.chunkCount, index -> redisTemplate.execute(
+                (RedisCallback<byte[]>) connection -> connection.get(rawKey(chunkKey(manifestKey, manifest.generation, index)))));
+    }
+
+    boolean expire(String manifestKey, long timeout, TimeUnit unit) {
+        Manifest manifest = readManifest(manifestKey);
+        if (manifest == null) {
+            return false;
+        }
+        long ttl = unit.toMillis(timeout);
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            openPipeline(connection);
+            connection.pExpire(rawKey(manifestKey), ttl);
+            expireChunks(connection, manifestKey, manifest, ttl + CHUNK_GRACE_MILLIS);
+            closePipeline(connection);
+            return null;
+        });
+        return true;
+    }
+
+    void delete(String manifestKey) {
+        Manifest manifest = readManifest(manifestKey);
+        if (manifest == null) {
+            return;
+        }
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            openPipeline(connection);
+            connection.del(rawKey(manifestKey));
+            for (int i = 0; i < manifest.chunkCount; i++) {
+                connection.del(rawKey(chunkKey(manifestKey, manifest.generation, i)));
+            }
+            closePipeline(connection);
+            return null;
+        });
+    }
+
+    private void writeChunks(String manifestKey, String generation, int firstIndex, List<byte[]> chunks) {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            openPipeline(connection);
+            for (int i = 0; i < chunks.size(); i++) {
+                connection.pSetEx(rawKey(chunkKey(manifestKey, generation, firstIndex + i)), CHUNK_PENDING_MILLIS, chunks.get(i));
+            }
+            closePipeline(connection);
+            return null;
+        });
+    }
+
+    /**
+     * 原子地替换清单, 同时取得替换前的清单; 写入大缓存值的次数很少, 直接以EVAL发送脚本全文
+     * @return 替换前的清单, 不存在或不是分块清单时返回{@code null}
+     */
+    private Manifest swapManifest(String manifestKey, Manifest manifest, long ttl) {
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.eval(
+                RedisScriptRegistry.SWAP_CHUNK_MANIFEST.getScriptAsString().getBytes(StandardCharsets.UTF_8),
+                ReturnType.VALUE, 1, rawKey(manifestKey), manifest.encode(),
+                String.valueOf(ttl).getBytes(StandardCharsets.UTF_8)));
+        if (raw == null) {
+            return null;
+        }
+        try {
+            return Manifest.decode(raw);
+        } catch (RuntimeException e) {
+            // 原来保存的不是分块缓存值
+            return null;
+        }
+    }
+
+    private void deleteChunksQuietly(String manifestKey, String generation, int chunkCount) {
+        if (chunkCount <= 0) {
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                openPipeline(connection);
+                for (int i = 0; i < chunkCount; i++) {
+                    connection.del(rawKey(chunkKey(manifestKey, generation, i)));
+                }
+                closePipeline(connection);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // 忽略, 分块在临时存活时间后过期
+        }
+    }
+
+    /**
+     * 集群连接不支持pipeline, 且各分块可能位于不同的slot, 此时逐条发送
+     */
+    private static void openPipeline(RedisConnection connection) {
+        if (!(connection instanceof RedisClusterConnection)) {
+            connection.openPipeline();
+        }
+    }
+
+    private static void closePipeline(RedisConnection connection) {
+        if (!(connection instanceof RedisClusterConnection)) {
+            connection.closePipeline();
+        }
+    }
+
+    private void expireChunks(RedisConnection connection, String manifestKey, Manifest manifest, long ttl) {
+        for (int i = 0; i < manifest.chunkCount; i++) {
+            connection.pExpire(rawKey(chunkKey(manifestKey, manifest.generation, i)), ttl);
+        }
+    }
+
+    private Manifest readManifest(String manifestKey) {
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey(manifestKey)));
+        return raw == null ? null : Manifest.decode(raw);
+    }
+
+    private byte[] rawKey(String key) {
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        return stringSerializer.serialize(key);
+    }
+
+    private static String chunkKey(String manifestKey, String generation, int index) {
+        return manifestKey + ":chunk:" + generation + ":" + index;
+    }
+
+    /**
+     * 分块清单, 保存格式为: 批次号:分块数量:总长度
+     */
+    private static final class Manifest {
+        final String generation;
+        final int chunkCount;
+        final long totalLength;
+
+        Manifest(String generation, int chunkCount, long totalLength) {
+            this.generation = generation;
+            this.chunkCount = chunkCount;
+            this.totalLength = totalLength;
+        }
+
+        byte[] encode() {
+            return (generation + ":" + chunkCount + ":" + totalLength).getBytes(StandardCharsets.UTF_8);
+        }
+
+        static Manifest decode(byte[] raw) {
+            String[] parts = new String(raw, StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) {
+                throw new IllegalStateException("not a chunked cache value manifest");
+            }
+            return new Manifest(parts[0], Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+        }
+    }
+}
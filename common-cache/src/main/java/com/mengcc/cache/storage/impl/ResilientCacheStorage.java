@@ -0,0 +1,518 @@
+package com.mengcc.cache.storage.impl;
+
+import com.mengcc.cache.helper.CircuitBreaker;
+import com.mengcc.cache.storage.CacheStorage;
+import com.mengcc.cache.storage.ExpirePolicy;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 带熔断保护的缓存, 可包装任意{@link CacheStorage}(通常是redis缓存)。
+ * <p>远程缓存正常时, 读取的结果镜像到本地的{@link LocalMemoryCacheStorage}影子缓存, 写操作使影子缓存中对应的key失效;
+ * 远程缓存失败率或慢调用率过高时熔断, 熔断期间读操作由影子缓存提供, 写操作只作用于影子缓存,
+ * 并按{@link WriteMode}丢弃或缓冲, 缓冲的写操作在熔断器探测恢复后按顺序回放到远程缓存,
+ * 回放完成之前新的写操作继续进入缓冲, 保证写入远程缓存的顺序。影子缓存中的数据最多保留{@code shadowTtlSec}秒,
+ * 数量超出上限时淘汰最早到期的缓存, 内存占用不随远程缓存的读取范围增长。</p>
+ * <p>依赖原子性的{@link #setIfAbsent(String, Object)}(如分布式锁)、{@link #compareAndSet(String, long, Object)}
+ * 和{@link #acquirePermit(String, String, int, long, TimeUnit)}在熔断期间一律返回{@code false}, 不会退化为本地操作。</p>
+ *
+ * @author zhouzq
+ * @date 2026/10/19
+ */
+public class ResilientCacheStorage<V> implements CacheStorage<V>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilientCacheStorage.class);
+
+    /** 熔断期间写操作的处理方式 */
+    public enum WriteMode {
+        /** 丢弃, 只写入影子缓存 */
+        DROP,
+        /** 缓冲, 恢复后回放到远程缓存 */
+        BUFFER
+    }
+
+    /** 默认影子缓存的存活时间(秒) */
+    private static final long DEFAULT_SHADOW_TTL_SEC = 600L;
+
+    /** 默认缓冲的写操作数量上限 */
+    private static final int DEFAULT_BUFFER_CAPACITY = 10000;
+
+    /** 默认影子缓存的数量上限 */
+    private static final int DEFAULT_MAX_SHADOW_ENTRIES = 10000;
+
+    final private CacheStorage<V> delegate;
+    final private LocalMemoryCacheStorage<V> shadow;
+    final private CircuitBreaker circuitBreaker;
+    final private WriteMode writeMode;
+    final private long shadowTtlSec;
+    final private BlockingQueue<Consumer<CacheStorage<V>>> pendingWrites;
+    final private ExecutorService replayExecutor;
+    /** 是否已提交了回放任务 */
+    final private AtomicBoolean replayScheduled = new AtomicBoolean();
+
+    public ResilientCacheStorage(CacheStorage<V> delegate) {
+        this(delegate, new CircuitBreaker(delegate.getKeyPrefix() + "cache"), WriteMode.DROP,
+                DEFAULT_SHADOW_TTL_SEC, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * @param delegate       被保护的缓存
+     * @param circuitBreaker 熔断器
+     * @param writeMode      熔断期间写操作的处理方式
+     * @param shadowTtlSec   影子缓存的存活时间(秒), 即熔断期间最多读到多久之前的数据
+     * @param bufferCapacity 缓冲的写操作数量上限, 超出后丢弃新的写操作
+     */
+    public ResilientCacheStorage(CacheStorage<V> delegate, CircuitBreaker circuitBreaker, WriteMode writeMode,
+                                 long shadowTtlSec, int bufferCapacity) {
+        this(delegate, circuitBreaker, writeMode, shadowTtlSec, bufferCapacity, DEFAULT_MAX_SHADOW_ENTRIES);
+    }
+
+    /**
+     * @param delegate         被保护的缓存
+     * @param circuitBreaker   熔断器
+     * @param writeMode        熔断期间写操作的处理方式
+     * @param shadowTtlSec     影子缓存的存活时间(秒), 即熔断期间最多读到多久之前的数据
+     * @param bufferCapacity   缓冲的写操作数量上限, 超出后丢弃新的写操作
+     * @param maxShadowEntries 影子缓存的数量上限, 超出后淘汰最早到期(即最久没有读取)的缓存
+     */
+    public ResilientCacheStorage(CacheStorage<V> delegate, CircuitBreaker circuitBreaker, WriteMode writeMode,
+                                 long shadowTtlSec, int bufferCapacity, int maxShadowEntries) {
+        if (maxShadowEntries <= 0) {
+            throw new IllegalArgumentException("maxShadowEntries must be positive");
+        }
+        this.delegate = delegate;
+        this.shadow = new LocalMemoryCacheStorage<>(delegate.getKeyPrefix(), ExpirePolicy.AFTER_WRITE, maxShadowEntries);
+        this.circuitBreaker = circuitBreaker;
+        this.writeMode = writeMode;
+        this.shadowTtlSec = shadowTtlSec;
+        this.pendingWrites = new ArrayBlockingQueue<>(bufferCapacity);
+        this.replayExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new BasicThreadFactory.Builder().namingPattern("cache-replay-thread-%d").daemon(true).build());
+        circuitBreaker.addListener(state -> {
+            if (state == CircuitBreaker.State.CLOSED && !pendingWrites.isEmpty()) {
+                scheduleReplay();
+            }
+        });
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * 当前缓冲待回放的写操作数量
+     * @return
+     */
+    public int pendingWriteCount() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * 停止回放线程和影子缓存的清理线程, 尚未回放的写操作不再回放
+     */
+    @Override
+    public void close() {
+        replayExecutor.shutdown();
+        shadow.close();
+        if (!pendingWrites.isEmpty()) {
+            log.warn(">> 关闭时还有{}个缓冲的写操作未回放到远程缓存", pendingWrites.size());
+        }
+    }
+
+    @Override
+    public boolean isRedis() {
+        return delegate.isRedis();
+    }
+
+    @Override
+    public boolean isStringRedis() {
+        return delegate.isStringRedis();
+    }
+
+    @Override
+    public boolean isLocal() {
+        return delegate.isLocal();
+    }
+
+    @Override
+    public String getKeyPrefix() {
+        return delegate.getKeyPrefix();
+    }
+
+    @Override
+    public V get(String key) {
+        return read(() -> delegate.get(key), () -> shadow.get(key), value -> {
+            if (value == null) {
+                shadow.delete(key);
+            } else {
+                shadow.set(key, value, shadowTtlSec, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        return read(() -> delegate.hasKey(key), () -> shadow.hasKey(key), null);
+    }
+
+    @Override
+    public Set<String> keys(String pattern, boolean prefix) {
+        return read(() -> delegate.keys(pattern, prefix), () -> shadow.keys(pattern, prefix), null);
+    }
+
+    @Override
+    public void delete(String key) {
+        write(key, storage -> storage.delete(key));
+    }
+
+    @Override
+    public void deleteByPattern(String pattern) {
+        write(null, storage -> storage.deleteByPattern(pattern));
+    }
+
+    @Override
+    public void deleteWithPrex(Collection<String> keys) {
+        Collection<String> copy = keys == null ? null : new HashSet<>(keys);
+        write(null, storage -> storage.deleteWithPrex(copy));
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        Collection<String> copy = keys == null ? null : new HashSet<>(keys);
+        write(null, storage -> storage.delete(copy));
+    }
+
+    @Override
+    public void set(String key, V value) {
+        write(key, storage -> storage.set(key, value));
+    }
+
+    @Override
+    public void set(String key, V value, long timeout, TimeUnit unit) {
+        write(key, storage -> storage.set(key, value, timeout, unit));
+    }
+
+    @Override
+    public void set(String key, V value, long timeout, TimeUnit unit, Collection<String> tags) {
+        Collection<String> copy = tags == null ? null : new HashSet<>(tags);
+        write(key, storage -> storage.set(key, value, timeout, unit, copy));
+    }
+
+    @Override
+    public long invalidateTag(String tag) {
+        return writeAndGet((Collection<String>) null, storage -> storage.invalidateTag(tag));
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, V value) {
+        Boolean result = call(() -> delegate.setIfAbsent(key, value));
+        if (result == null) {
+            return false;
+        }
+        if (result) {
+            shadow.delete(key);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean expire(String key, long timeout, TimeUnit unit) {
+        return writeAndGet(key, storage -> storage.expire(key, timeout, unit));
+    }
+
+    @Override
+    public Long increment(String key, int delta) {
+        return writeAndGet(key, storage -> storage.increment(key, delta));
+    }
+
+    @Override
+    public Map<String, Long> incrementAll(Map<String, Long> deltas) {
+        Map<String, Long> copy = deltas == null ? null : new HashMap<>(deltas);
+        return writeAndGet(copy == null ? Collections.emptySet() : copy.keySet(), storage -> storage.incrementAll(copy));
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, V value, long timeout, TimeUnit unit) {
+        Boolean result = call(() -> delegate.setIfAbsent(key, value, timeout, unit));
+        if (result == null) {
+            return false;
+        }
+        if (result) {
+            shadow.delete(key);
+        }
+        return result;
+    }
+
+    @Override
+    public V getAndDelete(String key) {
+        return writeAndGet(key, storage -> storage.getAndDelete(key));
+    }
+
+    @Override
+    public V getAndExpire(String key, long timeout, TimeUnit unit) {
+        return writeAndGet(key, storage -> storage.getAndExpire(key, timeout, unit));
+    }
+
+    @Override
+    public long getVersion(String key) {
+        return read(() -> delegate.getVersion(key), () -> shadow.getVersion(key), null);
+    }
+
+    @Override
+    public boolean compareAndSet(String key, long expectedVersion, V value) {
+        Boolean result = call(() -> delegate.compareAndSet(key, expectedVersion, value));
+        if (result == null) {
+            return false;
+        }
+        if (result) {
+            shadow.delete(key);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, V> getFields(String key, Collection<String> fields) {
+        return read(() -> delegate.getFields(key, fields), () -> shadow.getFields(key, fields), result -> {
+            shadow.setFields(key, result);
+            shadow.expire(key, shadowTtlSec, TimeUnit.SECONDS);
+        });
+    }
+
+    @Override
+    public void setFields(String key, Map<String, V> fields) {
+        Map<String, V> copy = fields == null ? null : new HashMap<>(fields);
+        write(key, storage -> storage.setFields(key, copy));
+    }
+
+    @Override
+    public Long incrementField(String key, String field, long delta) {
+        return writeAndGet(key, storage -> storage.incrementField(key, field, delta));
+    }
+
+    /**
+     * 大缓存值不镜像到影子缓存, 熔断期间直接失败
+     */
+    @Override
+    public void setChunked(String key, InputStream data, long timeout, TimeUnit unit) {
+        if (call(() -> {
+            delegate.setChunked(key, data, timeout, unit);
+            return Boolean.TRUE;
+        }) == null) {
+            throw new IllegalStateException("remote cache is unavailable, chunked value not stored: " + key);
+        }
+    }
+
+    @Override
+    public InputStream getChunked(String key) {
+        return call(() -> delegate.getChunked(key));
+    }
+
+    @Override
+    public boolean expireChunked(String key, long timeout, TimeUnit unit) {
+        return Boolean.TRUE.equals(call(() -> delegate.expireChunked(key, timeout, unit)));
+    }
+
+    @Override
+    public void deleteChunked(String key) {
+        write(null, storage -> {
+            if (storage == delegate) {
+                storage.deleteChunked(key);
+            }
+        });
+    }
+
+    @Override
+    public boolean acquirePermit(String key, String holder, int permits, long leaseTime, TimeUnit unit) {
+        return Boolean.TRUE.equals(call(() -> delegate.acquirePermit(key, holder, permits, leaseTime, unit)));
+    }
+
+    @Override
+    public boolean releasePermit(String key, String holder) {
+        // 熔断期间无法释放时, 许可在租约到期后自动归还
+        return Boolean.TRUE.equals(call(() -> delegate.releasePermit(key, holder)));
+    }
+
+    @Override
+    public Long countDown(String key) {
+        // 熔断期间不自减, 计数在失效时间到期后自动清除
+        return call(() -> delegate.countDown(key));
+    }
+
+    /**
+     * 读操作: 远程可用时读远程并镜像到影子缓存, 否则读影子缓存
+     */
+    private <T> T read(Supplier<T> remote, Supplier<T> local, Consumer<T> mirror) {
+        if (!circuitBreaker.tryAcquire()) {
+            return local.get();
+        }
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = remote.get();
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            circuitBreaker.onError(System.nanoTime() - start);
+            log.warn(">> 远程缓存读取失败, 使用本地影子缓存: {}", e.getMessage());
+            return local.get();
+        }
+        // 影子缓存出错不影响远程缓存的结果, 也不计入熔断器
+        if (mirror != null) {
+            try {
+                mirror.accept(result);
+            } catch (RuntimeException e) {
+                log.warn(">> 镜像到影子缓存失败: {}", e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private void write(String key, Consumer<CacheStorage<V>> operation) {
+        writeAndGet(key, storage -> {
+            operation.accept(storage);
+            return null;
+        });
+    }
+
+    private <T> T writeAndGet(String key, Function<CacheStorage<V>, T> operation) {
+        return writeAndGet(key == null ? null : Collections.singleton(key), operation);
+    }
+
+    /**
+     * 写操作: 远程可用且没有待回放的写操作时写远程并返回远程的结果, 影子缓存中对应的key失效, 由之后的读操作重新镜像;
+     * 否则写入影子缓存, 按写模式丢弃或缓冲, 返回影子缓存的结果
+     * @param keys      写操作涉及的key(不带前缀), 为{@code null}时表示写操作只删除缓存, 直接作用于影子缓存
+     * @param operation 写操作
+     */
+    private <T> T writeAndGet(Collection<String> keys, Function<CacheStorage<V>, T> operation) {
+        // 还有缓冲的写操作未回放时, 新的写操作排在后面, 避免与回放的写操作乱序
+        boolean buffering = writeMode == WriteMode.BUFFER && !pendingWrites.isEmpty();
+        if (!buffering && circuitBreaker.tryAcquire()) {
+            long start = System.nanoTime();
+            T result = null;
+            boolean written = false;
+            try {
+                result = operation.apply(delegate);
+                circuitBreaker.onSuccess(System.nanoTime() - start);
+                written = true;
+            } catch (RuntimeException e) {
+                circuitBreaker.onError(System.nanoTime() - start);
+                log.warn(">> 远程缓存写入失败: {}", e.getMessage());
+            }
+            if (written) {
+                if (keys == null) {
+                    operation.apply(shadow);
+                } else {
+                    shadow.deleteWithPrex(keys);
+                }
+                return result;
+            }
+        }
+        T localResult = operation.apply(shadow);
+        if (keys != null) {
+            // 计数器、哈希和不带存活时间的写入同样限制在影子缓存的存活时间内
+            keys.forEach(key -> shadow.limitExpire(key, shadowTtlSec));
+        }
+        if (writeMode == WriteMode.BUFFER) {
+            if (!pendingWrites.offer(operation::apply)) {
+                log.warn(">> 远程缓存熔断期间缓冲的写操作已达上限{}, 丢弃写操作", pendingWrites.size());
+            } else if (circuitBreaker.getState() == CircuitBreaker.State.CLOSED) {
+                scheduleReplay();
+            }
+        }
+        return localResult;
+    }
+
+    /**
+     * 远程可用时执行调用, 否则返回{@code null}
+     */
+    private <T> T call(Supplier<T> remote) {
+        if (!circuitBreaker.tryAcquire()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            T result = remote.get();
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            circuitBreaker.onError(System.nanoTime() - start);
+            log.warn(">> 远程缓存调用失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 提交回放任务, 已提交的回放任务还没有结束时不重复提交
+     */
+    private void scheduleReplay() {
+        if (replayScheduled.compareAndSet(false, true)) {
+            try {
+                replayExecutor.execute(this::replayPendingWrites);
+            } catch (RejectedExecutionException e) {
+                // 已关闭
+                replayScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 熔断器恢复后按顺序回放缓冲的写操作, 回放失败则保留剩余的写操作等待下一次恢复
+     */
+    private void replayPendingWrites() {
+        try {
+            int count = replay();
+            if (count > 0) {
+                log.info(">> 远程缓存恢复, 回放了{}个缓冲的写操作", count);
+            }
+        } finally {
+            replayScheduled.set(false);
+        }
+        // 回放结束前进入缓冲的写操作
+        if (!pendingWrites.isEmpty() && circuitBreaker.getState() == CircuitBreaker.State.CLOSED) {
+            scheduleReplay();
+        }
+    }
+
+    private int replay() {
+        int count = 0;
+        Consumer<CacheStorage<V>> operation;
+        while ((operation = pendingWrites.peek()) != null) {
+            if (!circuitBreaker.tryAcquire()) {
+                break;
+            }
+            long start = System.nanoTime();
+            try {
+                operation.accept(delegate);
+                circuitBreaker.onSuccess(System.nanoTime() - start);
+                pendingWrites.poll();
+                count++;
+            } catch (RuntimeException e) {
+                circuitBreaker.onError(System.nanoTime() - start);
+                log.warn(">> 回放缓冲的写操作失败, 剩余{}个: {}", pendingWrites.size(), e.getMessage());
+                break;
+            }
+        }
+        return count;
+    }
+}
@@ -1,11 +1,21 @@
 package com.mengcc.cache.storage.impl;
 
+import com.mengcc.cache.script.RedisScriptRegistry;
 import com.mengcc.cache.storage.CacheStorage;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -20,10 +30,19 @@ public class StringRedisCacheStorage implements CacheStorage<String> {
 
     final private StringRedisTemplate stringRedisTemplate;
     final private String keyPrefix;
+    final private RedisChunkedValueSupport chunkedValueSupport;
+
+    /** 标签索引key的前缀, 位于缓存key前缀之后 */
+    private static final String TAG_KEY_PREFIX = "tag:";
+
+    /** 版本号key的后缀, 位于缓存key之后 */
+    private static final String VERSION_KEY_SUFFIX = ":version";
 
     public StringRedisCacheStorage(String keyPrefix, StringRedisTemplate stringRedisTemplate) {
         this.keyPrefix = keyPrefix;
         this.stringRedisTemplate = stringRedisTemplate;
+        this.chunkedValueSupport = new RedisChunkedValueSupport(stringRedisTemplate, RedisChunkedValueSupport.DEFAULT_CHUNK_SIZE);
+        RedisScriptRegistry.preload(stringRedisTemplate);
     }
 
     @Override
@@ -134,6 +153,205 @@ public class StringRedisCacheStorage implements CacheStorage<String> {
         return stringRedisTemplate.opsForValue().increment(prefix(key), delta);
     }
 
+    @Override
+    public Map<String, Long> incrementAll(Map<String, Long> deltas) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (deltas == null || deltas.isEmpty()) {
+            return result;
+        }
+        List<String> keys = new ArrayList<>(deltas.keySet());
+        RedisSerializer<String> keySerializer = stringRedisTemplate.getStringSerializer();
+        List<Object> values = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> connection.incrBy(keySerializer.serialize(prefix(key)), deltas.get(key)));
+            return null;
+        });
+        for (int i = 0; i < keys.size(); i++) {
+            result.put(keys.get(i), (Long) values.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public void set(String key, String value, long timeout, TimeUnit unit, Collection<String> tags) {
+        if (StringUtils.isBlank(key)) {
+            return;
+        }
+        List<String> scriptKeys = new ArrayList<>();
+        scriptKeys.add(prefix(key));
+        if (tags != null) {
+            tags.stream().filter(StringUtils::isNotBlank).distinct().map(this::tagKey).forEach(scriptKeys::add);
+        }
+        long ttl = timeout > 0 && unit != null ? unit.toMillis(timeout) : 0L;
+        stringRedisTemplate.execute(RedisScriptRegistry.SET_WITH_TAGS, scriptKeys, value, String.valueOf(ttl));
+    }
+
+    @Override
+    public long invalidateTag(String tag) {
+        if (StringUtils.isBlank(tag)) {
+            return 0L;
+        }
+        Long count = stringRedisTemplate.execute(RedisScriptRegistry.INVALIDATE_TAG, Collections.singletonList(tagKey(tag)));
+        return count == null ? 0L : count;
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long timeout, TimeUnit unit) {
+        if (StringUtils.isBlank(key)) {
+            return false;
+        }
+        // SET NX PX本身就是原子操作, 无需脚本
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(prefix(key), value, timeout, unit));
+    }
+
+    @Override
+    public String getAndDelete(String key) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        return (String) stringRedisTemplate.execute(RedisScriptRegistry.GET_AND_DELETE, Collections.singletonList(prefix(key)));
+    }
+
+    @Override
+    public String getAndExpire(String key, long timeout, TimeUnit unit) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        return (String) stringRedisTemplate.execute(RedisScriptRegistry.GET_AND_EXPIRE, Collections.singletonList(prefix(key)),
+                String.valueOf(unit.toMillis(timeout)));
+    }
+
+    @Override
+    public long getVersion(String key) {
+        if (StringUtils.isBlank(key)) {
+            return 0L;
+        }
+        String version = stringRedisTemplate.opsForValue().get(versionKey(key));
+        return version == null ? 0L : Long.parseLong(version);
+    }
+
+    @Override
+    public boolean compareAndSet(String key, long expectedVersion, String value) {
+        if (StringUtils.isBlank(key)) {
+            return false;
+        }
+        Long result = stringRedisTemplate.execute(RedisScriptRegistry.COMPARE_AND_SET,
+                Arrays.asList(prefix(key), versionKey(key)), String.valueOf(expectedVersion), value);
+        return result != null && result == 1L;
+    }
+
+    @Override
+    public Map<String, String> getFields(String key, Collection<String> fields) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (StringUtils.isBlank(key)) {
+            return result;
+        }
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        RedisSerializer<String> valueSerializer = stringRedisTemplate.getStringSerializer();
+        byte[] rawKey = stringSerializer.serialize(prefix(key));
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            if (fields == null || fields.isEmpty()) {
+                Map<byte[], byte[]> entries = connection.hGetAll(rawKey);
+                if (entries != null) {
+                    entries.forEach((field, value) -> result.put(stringSerializer.deserialize(field),
+                            valueSerializer.deserialize(value)));
+                }
+                return null;
+            }
+            List<String> fieldList = new ArrayList<>(fields);
+            List<byte[]> values = connection.hMGet(rawKey,
+                    fieldList.stream().map(stringSerializer::serialize).toArray(byte[][]::new));
+            for (int i = 0; values != null && i < fieldList.size(); i++) {
+                if (values.get(i) != null) {
+                    result.put(fieldList.get(i), valueSerializer.deserialize(values.get(i)));
+                }
+            }
+            return null;
+        });
+        return result;
+    }
+
+    @Override
+    public void setFields(String key, Map<String, String> fields) {
+        if (StringUtils.isBlank(key) || fields == null || fields.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        RedisSerializer<String> valueSerializer = stringRedisTemplate.getStringSerializer();
+        Map<byte[], byte[]> rawFields = new LinkedHashMap<>();
+        fields.forEach((field, value) -> rawFields.put(stringSerializer.serialize(field), valueSerializer.serialize(value)));
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.hMSet(stringSerializer.serialize(prefix(key)), rawFields);
+            return null;
+        });
+    }
+
+    @Override
+    public Long incrementField(String key, String field, long delta) {
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        return stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.hIncrBy(stringSerializer.serialize(prefix(key)), stringSerializer.serialize(field), delta));
+    }
+
+    @Override
+    public void setChunked(String key, InputStream data, long timeout, TimeUnit unit) {
+        if (StringUtils.isBlank(key) || data == null) {
+            return;
+        }
+        chunkedValueSupport.set(prefix(key), data, timeout, unit);
+    }
+
+    @Override
+    public InputStream getChunked(String key) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        return chunkedValueSupport.get(prefix(key));
+    }
+
+    @Override
+    public boolean expireChunked(String key, long timeout, TimeUnit unit) {
+        if (StringUtils.isBlank(key)) {
+            return false;
+        }
+        return chunkedValueSupport.expire(prefix(key), timeout, unit);
+    }
+
+    @Override
+    public void deleteChunked(String key) {
+        if (StringUtils.isBlank(key)) {
+            return;
+        }
+        chunkedValueSupport.delete(prefix(key));
+    }
+
+    @Override
+    public boolean acquirePermit(String key, String holder, int permits, long leaseTime, TimeUnit unit) {
+        if (StringUtils.isBlank(key) || StringUtils.isBlank(holder)) {
+            return false;
+        }
+        Long result = stringRedisTemplate.execute(RedisScriptRegistry.ACQUIRE_PERMIT, Collections.singletonList(prefix(key)),
+                holder, String.valueOf(permits), String.valueOf(unit.toMillis(leaseTime)));
+        return result != null && result == 1L;
+    }
+
+    @Override
+    public boolean releasePermit(String key, String holder) {
+        if (StringUtils.isBlank(key) || StringUtils.isBlank(holder)) {
+            return false;
+        }
+        Long removed = stringRedisTemplate.opsForZSet().remove(prefix(key), holder);
+        return removed != null && removed > 0;
+    }
+
+    @Override
+    public Long countDown(String key) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        Long count = stringRedisTemplate.execute(RedisScriptRegistry.COUNT_DOWN, Collections.singletonList(prefix(key)));
+        return count == null || count < 0 ? null : count;
+    }
+
     @Override
     public boolean isRedis() {
         return true;
@@ -152,4 +370,12 @@ public class StringRedisCacheStorage implements CacheStorage<String> {
     private String prefix(String key) {
         return keyPrefix + key;
     }
+
+    private String versionKey(String key) {
+        return keyPrefix + key + VERSION_KEY_SUFFIX;
+    }
+
+    private String tagKey(String tag) {
+        return keyPrefix + TAG_KEY_PREFIX + tag;
+    }
 }
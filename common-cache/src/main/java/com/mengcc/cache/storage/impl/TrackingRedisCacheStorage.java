@@ -0,0 +1,408 @@
+package com.mengcc.cache.storage.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.output.IntegerOutput;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandKeyword;
+import io.lettuce.core.protocol.CommandType;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.resource.ClientResources;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 使用redis服务端协助的客户端缓存(CLIENT TRACKING), 适用于读多写少的缓存, 如: 配置项。
+ * <p>{@link #get(String)}优先读取本地缓存, 未命中时通过开启了跟踪的专用连接读取redis并保存到本地,
+ * 这些key被任何客户端修改后, redis会把失效通知推送到订阅了{@code __redis__:invalidate}的连接, 本地缓存随即删除。
+ * 指定了广播前缀时使用BCAST模式, redis推送这些前缀下所有key的变化, 而不只是读取过的key。</p>
+ * <p>需要redis 6.0及以上版本。失效通知通过RESP2的REDIRECT转发到订阅连接; 连接断开期间收不到通知,
+ * 因此断开时清空本地缓存并直接读取redis, 后台重新建立连接并开启跟踪后再恢复本地缓存。</p>
+ * <p>写操作仍通过{@link RedisTemplate}执行, 本实例的写操作会立即删除对应的本地缓存。</p>
+ *
+ * @author zhouzq
+ * @date 2026/10/19
+ */
+public class TrackingRedisCacheStorage extends RedisCacheStorage implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(TrackingRedisCacheStorage.class);
+
+    /** redis推送失效通知的频道 */
+    private static final String INVALIDATE_CHANNEL = "__redis__:invalidate";
+
+    /** 重新连接的初始间隔和最大间隔(毫秒) */
+    private static final long MIN_RECONNECT_DELAY = 1000L;
+    private static final long MAX_RECONNECT_DELAY = 30000L;
+
+    final private RedisSerializer<String> keySerializer;
+    final private RedisSerializer<?> valueSerializer;
+
+    /** 广播模式下跟踪的key前缀(已带缓存key前缀), 为空时只跟踪读取过的key */
+    final private List<String> broadcastPrefixes;
+
+    /** 本地缓存, 带前缀的key -> 序列化后的缓存值, 每次读取都重新反序列化, 避免调用方修改缓存对象 */
+    final private Cache<String, byte[]> localCache;
+
+    final private RedisClient client;
+    final private ScheduledExecutorService reconnector;
+
+    /** 跟踪是否生效, 未生效时不使用本地缓存 */
+    final private AtomicBoolean tracking = new AtomicBoolean(false);
+
+    private volatile boolean closed = false;
+    private volatile StatefulRedisConnection<byte[], byte[]> dataConnection;
+    private volatile StatefulRedisPubSubConnection<String, String> invalidationConnection;
+    private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+    /**
+     * @param keyPrefix         key的统一前缀
+     * @param redisTemplate
+     * @param connectionFactory 单机redis的连接工厂, 使用相同的地址、库和密码建立跟踪连接
+     * @param maxLocalEntries   本地缓存的最大数量
+     * @param broadcastPrefixes 广播模式跟踪的key前缀(不含缓存key前缀), 不传则只跟踪读取过的key
+     */
+    public TrackingRedisCacheStorage(String keyPrefix, RedisTemplate<String, Object> redisTemplate,
+                                     LettuceConnectionFactory connectionFactory, int maxLocalEntries,
+                                     String... broadcastPrefixes) {
+        super(keyPrefix, redisTemplate);
+        if (maxLocalEntries <= 0) {
+            throw new IllegalArgumentException("maxLocalEntries must be positive");
+        }
+        this.keySerializer = redisTemplate.getStringSerializer();
+        this.valueSerializer = redisTemplate.getValueSerializer();
+        this.broadcastPrefixes = Arrays.stream(broadcastPrefixes)
+                .filter(StringUtils::isNotBlank)
+                .map(prefix -> keyPrefix + prefix)
+                .collect(Collectors.toList());
+        this.localCache = CacheBuilder.newBuilder().maximumSize(maxLocalEntries).build();
+
+        RedisURI.Builder uri = RedisURI.Builder.redis(connectionFactory.getHostName(), connectionFactory.getPort())
+                .withDatabase(connectionFactory.getDatabase());
+        if (StringUtils.isNotBlank(connectionFactory.getPassword())) {
+            uri.withPassword(connectionFactory.getPassword());
+        }
+        ClientResources resources = connectionFactory.getClientResources();
+        this.client = resources == null ? RedisClient.create(uri.build()) : RedisClient.create(resources, uri.build());
+        // 自动重连后跟踪状态已丢失, 由本类重新建立连接并开启跟踪
+        this.client.setOptions(ClientOptions.builder().autoReconnect(false).build());
+        this.client.addListener(new RedisConnectionStateListener() {
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+                // 重新连接时关闭的旧连接也会触发, 只处理当前使用的连接
+                if (connection == dataConnection || connection == invalidationConnection) {
+                    connectionLost();
+                }
+            }
+
+            @Override
+            public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+            }
+        });
+        this.reconnector = new ScheduledThreadPoolExecutor(1,
+                new BasicThreadFactory.Builder().namingPattern("cache-tracking-thread-%d").daemon(true).build());
+        connect();
+    }
+
+    @Override
+    public Object get(String key) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        StatefulRedisConnection<byte[], byte[]> connection = dataConnection;
+        if (!tracking.get() || connection == null) {
+            return super.get(key);
+        }
+        String prefixedKey = getKeyPrefix() + key;
+        byte[] cached = localCache.getIfPresent(prefixedKey);
+        if (cached != null && cached.length > 0) {
+            return valueSerializer.deserialize(cached);
+        }
+
+        // 先放入占位值再读取, 读取期间收到的失效通知会删除占位值, 读到的旧值就不会被保存
+        ConcurrentMap<String, byte[]> localMap = localCache.asMap();
+        byte[] marker = new byte[0];
+        boolean marked = localMap.putIfAbsent(prefixedKey, marker) == null;
+        byte[] raw;
+        try {
+            raw = connection.sync().get(keySerializer.serialize(prefixedKey));
+        } catch (RedisException e) {
+            localMap.remove(prefixedKey, marker);
+            log.warn(">> 通过跟踪连接读取缓存出错, 改为直接读取redis, key: {}", prefixedKey, e);
+            return super.get(key);
+        }
+        if (marked) {
+            if (raw == null) {
+                localMap.remove(prefixedKey, marker);
+            } else {
+                localMap.replace(prefixedKey, marker, raw);
+            }
+        }
+        return raw == null ? null : valueSerializer.deserialize(raw);
+    }
+
+    @Override
+    public void set(String key, Object value) {
+        super.set(key, value);
+        invalidateLocal(key);
+    }
+
+    @Override
+    public void set(String key, Object value, long timeout, TimeUnit unit) {
+        super.set(key, value, timeout, unit);
+        invalidateLocal(key);
+    }
+
+    @Override
+    public void set(String key, Object value, long timeout, TimeUnit unit, Collection<String> tags) {
+        super.set(key, value, timeout, unit, tags);
+        invalidateLocal(key);
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, Object value) {
+        boolean result = super.setIfAbsent(key, value);
+        invalidateLocal(key);
+        return result;
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, Object value, long timeout, TimeUnit unit) {
+        boolean result = super.setIfAbsent(key, value, timeout, unit);
+        invalidateLocal(key);
+        return result;
+    }
+
+    @Override
+    public void delete(String key) {
+        super.delete(key);
+        invalidateLocal(key);
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        super.delete(keys);
+        if (keys != null) {
+            localCache.invalidateAll(keys);
+        }
+    }
+
+    @Override
+    public void deleteWithPrex(Collection<String> keys) {
+        super.deleteWithPrex(keys);
+        if (keys != null) {
+            keys.forEach(this::invalidateLocal);
+        }
+    }
+
+    @Override
+    public void deleteByPattern(String pattern) {
+        super.deleteByPattern(pattern);
+        localCache.invalidateAll();
+    }
+
+    @Override
+    public long invalidateTag(String tag) {
+        long count = super.invalidateTag(tag);
+        localCache.invalidateAll();
+        return count;
+    }
+
+    @Override
+    public Object getAndDelete(String key) {
+        Object value = super.getAndDelete(key);
+        invalidateLocal(key);
+        return value;
+    }
+
+    @Override
+    public boolean compareAndSet(String key, long expectedVersion, Object value) {
+        boolean result = super.compareAndSet(key, expectedVersion, value);
+        invalidateLocal(key);
+        return result;
+    }
+
+    @Override
+    public Long increment(String key, int delta) {
+        Long value = super.increment(key, delta);
+        invalidateLocal(key);
+        return value;
+    }
+
+    @Override
+    public Long countDown(String key) {
+        Long value = super.countDown(key);
+        invalidateLocal(key);
+        return value;
+    }
+
+    @Override
+    public Map<String, Long> incrementAll(Map<String, Long> deltas) {
+        Map<String, Long> result = super.incrementAll(deltas);
+        if (deltas != null) {
+            deltas.keySet().forEach(this::invalidateLocal);
+        }
+        return result;
+    }
+
+    /**
+     * 本地缓存的数量
+     * @return
+     */
+    public long localSize() {
+        return localCache.size();
+    }
+
+    /**
+     * 跟踪是否生效, 未生效时读取直接访问redis
+     * @return
+     */
+    public boolean isTracking() {
+        return tracking.get();
+    }
+
+    /**
+     * 关闭跟踪连接并清空本地缓存
+     */
+    @Override
+    public void close() {
+        closed = true;
+        tracking.set(false);
+        reconnector.shutdownNow();
+        closeConnections();
+        localCache.invalidateAll();
+        client.shutdown();
+    }
+
+    private void invalidateLocal(String key) {
+        if (key != null) {
+            localCache.invalidate(getKeyPrefix() + key);
+        }
+    }
+
+    /**
+     * 建立订阅连接和开启了跟踪的读取连接, 失败时按退避间隔重试
+     */
+    private synchronized void connect() {
+        if (closed) {
+            return;
+        }
+        closeConnections();
+        try {
+            StatefulRedisPubSubConnection<String, String> pubSub = client.connectPubSub(StringCodec.UTF8);
+            invalidationConnection = pubSub;
+            // 订阅后连接只能执行订阅相关的命令, 因此先取得连接id
+            Long clientId = pubSub.sync().dispatch(CommandType.CLIENT, new IntegerOutput<>(StringCodec.UTF8),
+                    new CommandArgs<>(StringCodec.UTF8).add(CommandKeyword.ID));
+            pubSub.addListener(new RedisPubSubAdapter<String, String>() {
+                @Override
+                public void message(String channel, String message) {
+                    onInvalidation(message);
+                }
+            });
+            pubSub.sync().subscribe(INVALIDATE_CHANNEL);
+
+            StatefulRedisConnection<byte[], byte[]> connection = client.connect(ByteArrayCodec.INSTANCE);
+            dataConnection = connection;
+            CommandArgs<byte[], byte[]> args = new CommandArgs<>(ByteArrayCodec.INSTANCE)
+                    .add("TRACKING").add("ON").add("REDIRECT").add(clientId);
+            if (!broadcastPrefixes.isEmpty()) {
+                args.add("BCAST");
+                broadcastPrefixes.forEach(prefix -> args.add("PREFIX").add(prefix));
+            }
+            connection.sync().dispatch(CommandType.CLIENT, new StatusOutput<>(ByteArrayCodec.INSTANCE), args);
+
+            localCache.invalidateAll();
+            tracking.set(true);
+            reconnectDelay = MIN_RECONNECT_DELAY;
+            log.info(">> 已开启redis客户端缓存, 前缀: {}, 广播前缀: {}", getKeyPrefix(), broadcastPrefixes);
+        } catch (RuntimeException e) {
+            tracking.set(false);
+            closeConnections();
+            log.warn(">> 开启redis客户端缓存失败, {}毫秒后重试", reconnectDelay, e);
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * 连接断开后收不到失效通知, 清空本地缓存并在后台重新建立连接
+     */
+    private void connectionLost() {
+        if (!closed && tracking.compareAndSet(true, false)) {
+            localCache.invalidateAll();
+            log.warn(">> redis客户端缓存的连接已断开, 暂停使用本地缓存");
+            scheduleReconnect();
+        }
+    }
+
+    private void scheduleReconnect() {
+        long delay = reconnectDelay;
+        reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        try {
+            reconnector.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // 已关闭
+        }
+    }
+
+    /**
+     * 处理失效通知, 通知内容为{@code null}表示redis执行了FLUSHDB/FLUSHALL
+     */
+    private void onInvalidation(String key) {
+        if (key == null) {
+            localCache.invalidateAll();
+            return;
+        }
+        if (broadcastPrefixes.isEmpty()) {
+            localCache.invalidate(key);
+            return;
+        }
+        // 广播模式下一条通知可能包含同一前缀的多个key, 当前的客户端只能解析出其中一个, 因此删除整个前缀下的本地缓存
+        String prefix = broadcastPrefixes.stream().filter(key::startsWith).findFirst().orElse(null);
+        if (prefix == null) {
+            localCache.invalidate(key);
+        } else {
+            localCache.asMap().keySet().removeIf(cachedKey -> cachedKey.startsWith(prefix));
+        }
+    }
+
+    private void closeConnections() {
+        StatefulRedisConnection<byte[], byte[]> connection = dataConnection;
+        StatefulRedisPubSubConnection<String, String> pubSub = invalidationConnection;
+        dataConnection = null;
+        invalidationConnection = null;
+        if (connection != null) {
+            connection.closeAsync();
+        }
+        if (pubSub != null) {
+            pubSub.closeAsync();
+        }
+    }
+}
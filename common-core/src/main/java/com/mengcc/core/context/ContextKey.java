@@ -0,0 +1,102 @@
+package com.mengcc.core.context;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadContext}中类型化的变量key, 创建时分配固定的数组下标, 读写时直接按下标访问当前线程的数组.
+ * <p>下标不会回收, key应当声明为静态常量, 不要按业务数据动态创建。</p>
+ * <pre>
+ * private static final ContextKey&lt;String&gt; USER_ID = ContextKey.of("userId");
+ *
+ * USER_ID.set("1001");
+ * String userId = USER_ID.get();
+ * </pre>
+ *
+ * @param <T> 变量值的类型
+ * @author zhouzq
+ * @date 2026/10/19
+ */
+public final class ContextKey<T> {
+
+    private static final AtomicInteger PROPAGATED_SLOTS = new AtomicInteger();
+
+    private static final AtomicInteger LOCAL_SLOTS = new AtomicInteger();
+
+    private final String name;
+
+    private final int slot;
+
+    private final boolean propagated;
+
+    private ContextKey(String name, boolean propagated) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("context key name must not be empty");
+        }
+        this.name = name;
+        this.propagated = propagated;
+        this.slot = propagated ? PROPAGATED_SLOTS.getAndIncrement() : LOCAL_SLOTS.getAndIncrement();
+    }
+
+    /**
+     * 创建key, 变量会随{@link ThreadContext#capture()}传递到线程池中执行的任务
+     *
+     * @param name 名称, 仅用于日志和调试
+     * @param <T>  变量值的类型
+     * @return
+     */
+    public static <T> ContextKey<T> of(String name) {
+        return new ContextKey<>(name, true);
+    }
+
+    /**
+     * 创建只属于当前线程的key, 变量不会传递到其他线程, 适合保存可变的计数器、缓存等对象
+     *
+     * @param name 名称, 仅用于日志和调试
+     * @param <T>  变量值的类型
+     * @return
+     */
+    public static <T> ContextKey<T> local(String name) {
+        return new ContextKey<>(name, false);
+    }
+
+    public T get() {
+        return ThreadContext.get(this);
+    }
+
+    public T get(T defaultValue) {
+        return ThreadContext.get(this, defaultValue);
+    }
+
+    public void set(T value) {
+        ThreadContext.set(this, value);
+    }
+
+    public void remove() {
+        ThreadContext.remove(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isPropagated() {
+        return propagated;
+    }
+
+    int slot() {
+        return slot;
+    }
+
+    static int propagatedCount() {
+        return PROPAGATED_SLOTS.get();
+    }
+
+    static int localCount() {
+        return LOCAL_SLOTS.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ContextKey{name=" + name + ", slot=" + slot + ", propagated=" + propagated + "}";
+    }
+}
@@ -3,11 +3,21 @@ package com.mengcc.core.context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 基于ThreadLocal的线程相关上下文帮助类, 用于在同一线程下传递变量.
+ * <p>提交到线程池的任务可以通过{@link #capture()}或{@code wrap}方法带上提交时的上下文, 任务执行时恢复,
+ * 执行结束后还原执行线程原来的上下文, 避免上下文在池化的线程之间残留。
+ * {@link com.mengcc.core.utils.thread.ExecutorRegistry}创建的线程池会自动完成这一步。</p>
+ * <p>频繁访问的变量建议使用{@link ContextKey}, 按创建时分配的数组下标读写, 不需要计算hash;
+ * 以字符串为key的方法保留用于兼容。</p>
  *
  * @author zhouzq
  * @date 2017-12-18
@@ -16,12 +26,13 @@ public class ThreadContext {
 
     private static final Logger log = LoggerFactory.getLogger(ThreadContext.class);
 
-    private static ThreadLocal<Map<String, Object>> threadLocalMap = ThreadLocal.withInitial(() -> {
-        if (log.isDebugEnabled()) {
-            log.debug(">> initializing ThreaedLocalMap for thread [{}]", Thread.currentThread().getName());
-        }
-        return new HashMap<>();
-    });
+    private static final Object[] NO_SLOTS = new Object[0];
+
+    /** 只在写入时创建, 只读取、获取快照或执行快照任务的线程不会创建上下文 */
+    private static final ThreadLocal<Context> threadLocalMap = new ThreadLocal<>();
+
+    /** 没有上下文的线程读取时使用, 不会被修改 */
+    private static final Context NONE = new Context();
 
     /**
      * Don't let anyone instantiate this class
@@ -40,7 +51,35 @@ public class ThreadContext {
      */
     @SuppressWarnings("unchecked")
     public static <T> T get(String key) {
-        return (T) threadLocalMap.get().get(key);
+        return (T) current().values.get(key);
+    }
+
+    /**
+     * 获取当前线程相关的变量值
+     *
+     * @param key 变量的key
+     * @param <T> 变量值的类型
+     * @return 若无此key对应的变量值, 则返回{@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(ContextKey<T> key) {
+        Context context = current();
+        Object[] slots = key.isPropagated() ? context.slots : context.localSlots;
+        int slot = key.slot();
+        return slot < slots.length ? (T) slots[slot] : null;
+    }
+
+    /**
+     * 获取当前线程相关的变量值, 若为{@code null}则返回指定的默认值
+     *
+     * @param key          变量的key
+     * @param defaultValue 默认值
+     * @param <T>          变量值的类型
+     * @return 若无此key对应的变量值, 则返回defaultValue
+     */
+    public static <T> T get(ContextKey<T> key, T defaultValue) {
+        T value = get(key);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -65,7 +104,26 @@ public class ThreadContext {
      * @param value 变量值
      */
     public static void set(String key, Object value) {
-        threadLocalMap.get().put(key, value);
+        writableContext().writableValues().put(key, value);
+    }
+
+    /**
+     * 设置线程相关上下文的变量值
+     *
+     * @param key   变量的key
+     * @param value 变量值, 为{@code null}时等同于{@link #remove(ContextKey)}
+     * @param <T>   变量值的类型
+     */
+    public static <T> void set(ContextKey<T> key, T value) {
+        if (value == null && get(key) == null) {
+            return;
+        }
+        Context context = writableContext();
+        if (key.isPropagated()) {
+            context.writableSlots(key.slot())[key.slot()] = value;
+        } else {
+            context.writableLocalSlots(key.slot())[key.slot()] = value;
+        }
     }
 
     /**
@@ -74,7 +132,19 @@ public class ThreadContext {
      * @param key 变量的key
      */
     public static void remove(String key) {
-        threadLocalMap.get().remove(key);
+        Context context = current();
+        if (context.values.containsKey(key)) {
+            context.writableValues().remove(key);
+        }
+    }
+
+    /**
+     * 删除指定key的变量
+     *
+     * @param key 变量的key
+     */
+    public static void remove(ContextKey<?> key) {
+        set(key, null);
     }
 
     /**
@@ -86,4 +156,269 @@ public class ThreadContext {
         }
         threadLocalMap.remove();
     }
+
+    /**
+     * 获取当前线程上下文的只读快照。
+     * <p>快照与上下文共享同一个map和数组, 上下文下次修改时才复制(写时复制), 因此上下文不变时多次获取快照不会分配内存。
+     * 通过{@link ContextKey#local(String)}创建的变量不包含在快照中。</p>
+     *
+     * @return 上下文为空时返回{@link Snapshot#EMPTY}
+     */
+    public static Snapshot capture() {
+        return current().capture();
+    }
+
+    /**
+     * 包装任务, 执行时使用当前线程的上下文
+     *
+     * @param task 任务
+     * @return 包装后的任务
+     */
+    public static Runnable wrap(Runnable task) {
+        Snapshot snapshot = capture();
+        return () -> snapshot.run(task);
+    }
+
+    /**
+     * 包装任务, 执行时使用当前线程的上下文
+     *
+     * @param task 任务
+     * @param <T>  返回值类型
+     * @return 包装后的任务
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        Snapshot snapshot = capture();
+        return () -> snapshot.call(task);
+    }
+
+    /**
+     * 包装{@link java.util.concurrent.CompletableFuture#supplyAsync(Supplier)}等方法的参数, 执行时使用当前线程的上下文
+     *
+     * @param supplier 任务
+     * @param <T>      返回值类型
+     * @return 包装后的任务
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> supplier) {
+        Snapshot snapshot = capture();
+        return () -> snapshot.get(supplier);
+    }
+
+    /**
+     * 包装{@link java.util.concurrent.CompletableFuture#thenApplyAsync(Function)}等方法的参数, 执行时使用当前线程的上下文
+     *
+     * @param function 回调
+     * @param <T>      参数类型
+     * @param <R>      返回值类型
+     * @return 包装后的回调
+     */
+    public static <T, R> Function<T, R> wrapFunction(Function<T, R> function) {
+        Snapshot snapshot = capture();
+        return value -> snapshot.get(() -> function.apply(value));
+    }
+
+    private static Context current() {
+        Context context = threadLocalMap.get();
+        return context == null ? NONE : context;
+    }
+
+    private static Context writableContext() {
+        Context context = threadLocalMap.get();
+        if (context == null) {
+            if (log.isDebugEnabled()) {
+                log.debug(">> initializing ThreaedLocalMap for thread [{}]", Thread.currentThread().getName());
+            }
+            context = new Context();
+            threadLocalMap.set(context);
+        }
+        return context;
+    }
+
+    /**
+     * 把当前线程的上下文替换为快照的内容
+     *
+     * @return 替换前的上下文, 用于{@link #detach(Context)}还原, 原来没有上下文时为{@code null}
+     */
+    private static Context attach(Snapshot snapshot) {
+        Context previous = threadLocalMap.get();
+        if (snapshot != Snapshot.EMPTY) {
+            threadLocalMap.set(new Context(snapshot));
+        } else if (previous != null) {
+            threadLocalMap.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * 还原{@link #attach(Snapshot)}之前的上下文, 原来的上下文为空时直接清除, 不在池化的线程中残留
+     */
+    private static void detach(Context previous) {
+        if (previous == null || previous.isEmpty()) {
+            threadLocalMap.remove();
+        } else {
+            threadLocalMap.set(previous);
+        }
+    }
+
+    /**
+     * 线程的上下文, 与快照共享map或数组时修改前先复制
+     */
+    private static final class Context {
+        private Map<String, Object> values;
+        private boolean valuesShared;
+        private Object[] slots;
+        private boolean slotsShared;
+        private Object[] localSlots = NO_SLOTS;
+        private Snapshot snapshot;
+
+        private Context() {
+            this.values = new HashMap<>();
+            this.slots = NO_SLOTS;
+        }
+
+        private Context(Snapshot snapshot) {
+            this.values = snapshot.values;
+            this.valuesShared = true;
+            this.slots = snapshot.slots;
+            this.slotsShared = true;
+            this.snapshot = snapshot;
+        }
+
+        private Map<String, Object> writableValues() {
+            if (valuesShared) {
+                values = new HashMap<>(values);
+                valuesShared = false;
+            }
+            snapshot = null;
+            return values;
+        }
+
+        private Object[] writableSlots(int slot) {
+            if (slot >= slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(slot + 1, ContextKey.propagatedCount()));
+                slotsShared = false;
+            } else if (slotsShared) {
+                slots = slots.clone();
+                slotsShared = false;
+            }
+            snapshot = null;
+            return slots;
+        }
+
+        private Object[] writableLocalSlots(int slot) {
+            if (slot >= localSlots.length) {
+                localSlots = Arrays.copyOf(localSlots, Math.max(slot + 1, ContextKey.localCount()));
+            }
+            return localSlots;
+        }
+
+        private Snapshot capture() {
+            if (snapshot == null) {
+                if (values.isEmpty() && isAllNull(slots)) {
+                    return Snapshot.EMPTY;
+                }
+                snapshot = new Snapshot(values, slots);
+                valuesShared = true;
+                slotsShared = true;
+            }
+            return snapshot;
+        }
+
+        private boolean isEmpty() {
+            return values.isEmpty() && isAllNull(slots) && isAllNull(localSlots);
+        }
+
+        private static boolean isAllNull(Object[] array) {
+            for (Object value : array) {
+                if (value != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 上下文的只读快照, 可以在其他线程中恢复
+     */
+    public static final class Snapshot {
+
+        /** 空的上下文 */
+        public static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(), NO_SLOTS);
+
+        private final Map<String, Object> values;
+        private final Object[] slots;
+
+        private Snapshot(Map<String, Object> values, Object[] slots) {
+            this.values = values;
+            this.slots = slots;
+        }
+
+        /**
+         * @return 以字符串为key的变量的只读视图
+         */
+        public Map<String, Object> asMap() {
+            return Collections.unmodifiableMap(values);
+        }
+
+        /**
+         * @param key 变量的key
+         * @param <T> 变量值的类型
+         * @return 快照中该变量的值, 不存在或为{@link ContextKey#local(String)}创建的变量时返回{@code null}
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(ContextKey<T> key) {
+            return key.isPropagated() && key.slot() < slots.length ? (T) slots[key.slot()] : null;
+        }
+
+        public boolean isEmpty() {
+            return this == EMPTY;
+        }
+
+        /**
+         * 在快照的上下文中执行任务, 结束后还原当前线程原来的上下文
+         *
+         * @param task 任务
+         */
+        public void run(Runnable task) {
+            Context previous = attach(this);
+            try {
+                task.run();
+            } finally {
+                detach(previous);
+            }
+        }
+
+        /**
+         * 在快照的上下文中执行任务, 结束后还原当前线程原来的上下文
+         *
+         * @param task 任务
+         * @param <T>  返回值类型
+         * @return 任务的返回值
+         * @throws Exception 任务抛出的异常
+         */
+        public <T> T call(Callable<T> task) throws Exception {
+            Context previous = attach(this);
+            try {
+                return task.call();
+            } finally {
+                detach(previous);
+            }
+        }
+
+        /**
+         * 在快照的上下文中执行任务, 结束后还原当前线程原来的上下文
+         *
+         * @param supplier 任务
+         * @param <T>      返回值类型
+         * @return 任务的返回值
+         */
+        public <T> T get(Supplier<T> supplier) {
+            Context previous = attach(this);
+            try {
+                return supplier.get();
+            } finally {
+                detach(previous);
+            }
+        }
+    }
 }
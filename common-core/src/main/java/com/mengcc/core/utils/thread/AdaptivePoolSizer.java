@@ -0,0 +1,191 @@
+package com.mengcc.core.utils.thread;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 根据观测到的吞吐量和排队时间自动调整线程池的核心线程数
+ *
+ * <p>每个采样周期计算这段时间内的吞吐量、平均排队时间和平均执行时间:</p>
+ * <ul>
+ *     <li>有任务积压(队列非空或平均排队时间超过阈值)时按步长增加线程(爬山法); 如果上一次增加线程后吞吐量没有明显提升、
+ *     队列也没有缩短, 说明瓶颈不在线程数(如下游已经饱和), 撤回上一步并在若干个周期内不再增加</li>
+ *     <li>没有积压时按利特尔法则估算需要的线程数: 吞吐量 * 平均执行时间 * 冗余系数, 当前线程数多于估算值时逐步减少</li>
+ * </ul>
+ * <p>核心线程数始终在配置的上下限之间, 每次调整都会打印日志。通过{@link ExecutorConfig.Builder#adaptive(int, int)}
+ * 配置的线程池由{@link ExecutorRegistry}创建时自动启动。</p>
+ */
+@Slf4j
+public class AdaptivePoolSizer {
+
+    /** 利特尔法则估算线程数时的冗余系数 */
+    private static final double HEADROOM = 1.2;
+
+    /** 增加线程后吞吐量至少提升这个比例才继续增加 */
+    private static final double MIN_GAIN = 1.05;
+
+    /** 撤回增加后暂停增加的周期数 */
+    private static final int HOLD_PERIODS = 5;
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorMetrics metrics;
+    private final int minCore;
+    private final int maxCore;
+    private final int step;
+    private final long intervalMillis;
+    private final double backlogWaitMillis;
+
+    private ScheduledFuture<?> future;
+
+    /** 以下字段只在采样线程中访问 */
+    private long lastTimeNanos;
+    private long lastCompleted;
+    private long lastRunNanos;
+    private long lastWaitCount;
+    private long lastWaitNanos;
+    private double lastThroughput;
+    private int lastQueueSize;
+    private boolean lastIncreased;
+    private int holdPeriods;
+
+    /**
+     * @param name              {@link ExecutorRegistry}中的线程池名称
+     * @param minCore           核心线程数下限
+     * @param maxCore           核心线程数上限
+     * @param interval          采样周期
+     * @param unit              时间单位
+     */
+    public AdaptivePoolSizer(String name, int minCore, int maxCore, long interval, TimeUnit unit) {
+        this(name, ExecutorRegistry.get(name), minCore, maxCore, unit.toMillis(interval));
+    }
+
+    AdaptivePoolSizer(String name, ThreadPoolExecutor executor, int minCore, int maxCore, long intervalMillis) {
+        if (minCore <= 0 || maxCore < minCore || intervalMillis <= 0) {
+            throw new IllegalArgumentException("invalid adaptive sizing of executor " + name
+                    + ": minCore=" + minCore + ", maxCore=" + maxCore + ", intervalMillis=" + intervalMillis);
+        }
+        if (executor instanceof ScheduledThreadPoolExecutor) {
+            throw new IllegalArgumentException("adaptive sizing is not supported for scheduled executor " + name);
+        }
+        this.name = name;
+        this.executor = executor;
+        this.metrics = ExecutorRegistry.metrics(name);
+        this.minCore = minCore;
+        this.maxCore = maxCore;
+        this.step = Math.max(1, (maxCore - minCore) / 10);
+        this.intervalMillis = intervalMillis;
+        // 排队时间超过采样周期的1%视为积压
+        this.backlogWaitMillis = Math.max(1D, intervalMillis / 100D);
+    }
+
+    /**
+     * 开始定期采样和调整
+     */
+    public synchronized void start() {
+        if (future != null) {
+            return;
+        }
+        lastTimeNanos = System.nanoTime();
+        lastCompleted = metrics.runTimeHistogram().count();
+        lastRunNanos = metrics.runTimeHistogram().totalNanos();
+        lastWaitCount = metrics.queueWaitHistogram().count();
+        lastWaitNanos = metrics.queueWaitHistogram().totalNanos();
+        future = ExecutorRegistry.getScheduled(ExecutorRegistry.SCHEDULED)
+                .scheduleWithFixedDelay(this::adjustSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info(">> 线程池{}开启自动调整核心线程数, 范围: [{}, {}]", name, minCore, maxCore);
+    }
+
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void adjustSafely() {
+        try {
+            adjust();
+        } catch (Throwable e) {
+            log.error(">> 线程池{}自动调整核心线程数出错", name, e);
+        }
+    }
+
+    void adjust() {
+        long completed = metrics.runTimeHistogram().count();
+        long runNanos = metrics.runTimeHistogram().totalNanos();
+        long waitCount = metrics.queueWaitHistogram().count();
+        long waitNanos = metrics.queueWaitHistogram().totalNanos();
+        long now = System.nanoTime();
+        double seconds = (now - lastTimeNanos) / 1e9;
+        lastTimeNanos = now;
+
+        long completedDelta = completed - lastCompleted;
+        double throughput = seconds > 0 ? completedDelta / seconds : 0D;
+        double runMeanMillis = completedDelta > 0 ? (runNanos - lastRunNanos) / (double) completedDelta / 1e6 : 0D;
+        long waitDelta = waitCount - lastWaitCount;
+        double waitMeanMillis = waitDelta > 0 ? (waitNanos - lastWaitNanos) / (double) waitDelta / 1e6 : 0D;
+        lastCompleted = completed;
+        lastRunNanos = runNanos;
+        lastWaitCount = waitCount;
+        lastWaitNanos = waitNanos;
+
+        int current = executor.getCorePoolSize();
+        int target = current;
+        String reason = null;
+        int queueSize = executor.getQueue().size();
+        boolean backlog = queueSize > 0 || waitMeanMillis > backlogWaitMillis;
+        if (holdPeriods > 0) {
+            holdPeriods--;
+        }
+        if (backlog) {
+            // 队列在缩短说明增加的线程正在消化积压, 吞吐量下降只是因为任务变少了
+            if (lastIncreased && throughput < lastThroughput * MIN_GAIN && queueSize >= lastQueueSize) {
+                target = current - step;
+                holdPeriods = HOLD_PERIODS;
+                reason = "增加线程后吞吐量没有提升, 撤回";
+            } else if (holdPeriods == 0) {
+                target = current + step;
+                reason = "任务积压";
+            }
+        } else {
+            // 利特尔法则: 平均并发数 = 吞吐量 * 平均执行时间
+            int needed = (int) Math.ceil(throughput * runMeanMillis / 1000D * HEADROOM);
+            if (current > needed) {
+                target = Math.max(needed, current - step);
+                reason = "按吞吐量估算需要" + needed + "个线程";
+            }
+        }
+        target = Math.max(minCore, Math.min(maxCore, target));
+        lastIncreased = target > current;
+        lastThroughput = throughput;
+        lastQueueSize = queueSize;
+        if (target != current) {
+            resize(target);
+            log.info(">> 调整线程池{}的核心线程数: {} -> {}, 原因: {}, 吞吐量: {}/s, 平均排队: {}ms, 平均执行: {}ms, 队列长度: {}",
+                    name, current, target, reason, String.format("%.1f", throughput),
+                    String.format("%.2f", waitMeanMillis), String.format("%.2f", runMeanMillis), queueSize);
+        }
+    }
+
+    private void resize(int core) {
+        int configuredMax = ExecutorRegistry.getConfig(name).getMaxSize();
+        if (core > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(core);
+            executor.setCorePoolSize(core);
+        } else {
+            executor.setCorePoolSize(core);
+            executor.setMaximumPoolSize(Math.max(core, configuredMax));
+        }
+    }
+}
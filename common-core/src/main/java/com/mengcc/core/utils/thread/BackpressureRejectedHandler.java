@@ -0,0 +1,160 @@
+package com.mengcc.core.utils.thread;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 按{@link ExecutorConfig.RejectPolicy}处理队列已满的任务, 同时记录拒绝和丢弃的数量
+ *
+ * <p>{@link ThreadPoolUtils#trySubmit(Runnable)}提交的任务不等待、不在提交线程执行, 也不挤掉其他任务, 直接拒绝。
+ * 工具类内部的{@link DispatchTask}在任何策略下都不会被丢弃, 需要丢弃时改为拒绝, 由提交方在当前线程执行。</p>
+ */
+class BackpressureRejectedHandler implements RejectedExecutionHandler {
+
+    private final ExecutorConfig.RejectPolicy policy;
+    private final long blockTimeoutNanos;
+    private final Semaphore callerRunsPermits;
+    private final ExecutorMetrics metrics;
+
+    BackpressureRejectedHandler(ExecutorConfig config, ExecutorMetrics metrics) {
+        this.policy = config.getRejectPolicy();
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getBlockTimeoutMillis());
+        this.callerRunsPermits = config.getCallerRunsLimit() > 0 ? new Semaphore(config.getCallerRunsLimit()) : null;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        if (r instanceof InstrumentedThreadPoolExecutor.InstrumentedTask && ((InstrumentedThreadPoolExecutor.InstrumentedTask) r).nonBlocking) {
+            reject(r, executor);
+        }
+        switch (policy) {
+            case BLOCK:
+                block(r, executor);
+                break;
+            case CALLER_RUNS:
+                callerRuns(r, executor);
+                break;
+            case DISCARD:
+                discardOrReject(r, executor);
+                break;
+            case DISCARD_OLDEST:
+                discardOldest(r, executor);
+                break;
+            case ABORT:
+            default:
+                reject(r, executor);
+        }
+    }
+
+    private void block(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            reject(r, executor);
+        }
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        try {
+            if (!queue.offer(r, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                reject(r, executor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(r, executor);
+        }
+        // 等待期间线程池关闭了, 撤回任务
+        if (executor.isShutdown() && queue.remove(r)) {
+            reject(r, executor);
+        }
+    }
+
+    private void callerRuns(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            discardOrReject(r, executor);
+            return;
+        }
+        if (callerRunsPermits == null) {
+            metrics.taskCallerRuns();
+            r.run();
+            return;
+        }
+        // 同时在提交线程中执行的任务超过上限时拒绝, 避免所有请求线程都被拖进来执行任务
+        if (!callerRunsPermits.tryAcquire()) {
+            reject(r, executor);
+        }
+        try {
+            metrics.taskCallerRuns();
+            r.run();
+        } finally {
+            callerRunsPermits.release();
+        }
+    }
+
+    private void discardOldest(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            discardOrReject(r, executor);
+            return;
+        }
+        // r已经包装过, 直接放入队列重试; 通过execute重试会再包装一层, 重复记录指标和上下文
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        while (!queue.offer(r)) {
+            Runnable oldest = oldestDiscardable(queue);
+            if (oldest == null) {
+                // 队列没有容量(如: SynchronousQueue)或排队的都是调度任务, 没有可以挤掉的任务
+                discardOrReject(r, executor);
+                return;
+            }
+            if (queue.remove(oldest)) {
+                discard(oldest);
+            }
+        }
+        // 入队期间线程池关闭了, 撤回任务
+        if (executor.isShutdown() && queue.remove(r)) {
+            discardOrReject(r, executor);
+        }
+    }
+
+    /**
+     * 队列中最早的可以丢弃的任务, 跳过调度任务
+     */
+    private static Runnable oldestDiscardable(BlockingQueue<Runnable> queue) {
+        for (Runnable queued : queue) {
+            if (!DispatchTask.isDispatchTask(queued)) {
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 丢弃任务, 调度任务丢弃后其负责的任务都不会再执行, 改为拒绝
+     */
+    private void discardOrReject(Runnable r, ThreadPoolExecutor executor) {
+        if (DispatchTask.isDispatchTask(r)) {
+            reject(r, executor);
+        }
+        metrics.taskDiscarded();
+    }
+
+    /**
+     * 被挤掉的任务如果是submit提交的, 取消它, 避免等待结果的线程一直阻塞
+     */
+    private void discard(Runnable oldest) {
+        metrics.taskDiscarded();
+        Runnable task = oldest instanceof InstrumentedThreadPoolExecutor.InstrumentedTask
+                ? ((InstrumentedThreadPoolExecutor.InstrumentedTask) oldest).delegate : oldest;
+        if (task instanceof Future) {
+            ((Future<?>) task).cancel(false);
+        }
+    }
+
+    private void reject(Runnable r, ThreadPoolExecutor executor) {
+        metrics.taskRejected();
+        throw new RejectedExecutionException("Task " + r + " rejected from " + executor);
+    }
+}
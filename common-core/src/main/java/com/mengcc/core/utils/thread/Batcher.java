@@ -0,0 +1,331 @@
+package com.mengcc.core.utils.thread;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 攒批执行器: 收集提交的元素, 攒够maxSize个或最早的元素等待超过maxDelay时, 把一批元素交给处理函数一次处理
+ *
+ * <p>适合数据库批量插入、redis批量自增、批量发送通知等批量处理比逐条处理便宜得多的场景。
+ * 提交时返回每个元素各自的{@link CompletableFuture}, 批量处理完成后按下标取得各自的结果。
+ * 提交元素不加全局锁, 等待处理的元素数量有上限, {@link #close()}时处理完剩余的元素;
+ * 未关闭的执行器在{@link ExecutorRegistry#shutdownAll(long, TimeUnit)}关闭线程池之前自动关闭。</p>
+ * <pre>
+ * Batcher&lt;Long, Boolean&gt; batcher = Batcher.builder("user-insert", (List&lt;Long&gt; ids) -&gt; dao.insertAll(ids))
+ *         .maxSize(200).maxDelay(20, TimeUnit.MILLISECONDS).build();
+ * batcher.submit(1001L).thenAccept(...);
+ * </pre>
+ *
+ * @param <T> 元素类型
+ * @param <R> 每个元素的处理结果类型
+ */
+@Slf4j
+public class Batcher<T, R> implements AutoCloseable {
+
+    private final String name;
+    private final Function<List<T>, List<R>> handler;
+    private final int maxSize;
+    private final long maxDelayNanos;
+    /** 使用{@link ExecutorRegistry}中的线程池时的名称, 每次按名称获取, 线程池关闭后重新创建的也能继续使用 */
+    private final String executorName;
+    private final Executor executor;
+
+    private final Queue<Item<T, R>> queue = new ConcurrentLinkedQueue<>();
+    /** 等待处理的元素数量, 比队列的size()便宜 */
+    private final AtomicInteger size = new AtomicInteger();
+    private final Semaphore capacity;
+
+    /** 是否已安排了超时刷新 */
+    private final AtomicBoolean timerArmed = new AtomicBoolean();
+    /** 已安排的超时刷新, 关闭时取消 */
+    private volatile ScheduledFuture<?> timer;
+    /** 下一次处理时是否把不足一批的元素也一起处理 */
+    private final AtomicBoolean flushAllRequested = new AtomicBoolean();
+    /** 同一时刻只有一个线程在处理, 保证批次按提交顺序执行 */
+    private final AtomicBoolean draining = new AtomicBoolean();
+    /** 提交给线程池的批量处理任务, 线程池不会丢弃它, 避免draining一直为true */
+    private final DispatchTask drainTask = this::drain;
+
+    private volatile boolean closed;
+
+    private Batcher(Builder<T, R> builder) {
+        this.name = builder.name;
+        this.handler = builder.handler;
+        this.maxSize = builder.maxSize;
+        this.maxDelayNanos = builder.maxDelayNanos;
+        this.executorName = builder.executor == null ? ExecutorRegistry.FIXED : null;
+        this.executor = builder.executor;
+        this.capacity = new Semaphore(builder.capacity);
+        ExecutorRegistry.addShutdownAction(this, "batcher-" + name, deadline -> {
+            close();
+            return 0;
+        });
+    }
+
+    /**
+     * @param name    名称, 用于日志
+     * @param handler 批量处理函数, 返回的结果与参数按下标一一对应
+     * @return
+     */
+    public static <T, R> Builder<T, R> builder(String name, Function<List<T>, List<R>> handler) {
+        return new Builder<>(name, handler);
+    }
+
+    /**
+     * 提交元素, 等待处理的元素已达上限时立即失败
+     * @param item 元素
+     * @return 元素的处理结果, 已达上限或已关闭时以{@link RejectedExecutionException}失败
+     */
+    public CompletableFuture<R> submit(T item) {
+        if (closed || !capacity.tryAcquire()) {
+            return rejected();
+        }
+        return enqueue(item);
+    }
+
+    /**
+     * 提交元素, 等待处理的元素已达上限时最多等待指定的时间
+     * @param item    元素
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 元素的处理结果, 等待超时、线程被中断或已关闭时以{@link RejectedExecutionException}失败
+     */
+    public CompletableFuture<R> submit(T item, long timeout, TimeUnit unit) {
+        try {
+            if (closed || !capacity.tryAcquire(timeout, unit)) {
+                return rejected();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return rejected();
+        }
+        return enqueue(item);
+    }
+
+    /**
+     * 立即处理所有等待中的元素, 不等待处理完成
+     */
+    public void flush() {
+        flushAllRequested.set(true);
+        requestDrain();
+    }
+
+    /**
+     * 等待处理的元素数量
+     * @return
+     */
+    public int pendingCount() {
+        return size.get();
+    }
+
+    /**
+     * 不再接收新的元素, 在当前线程处理完所有等待中的元素后返回
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ExecutorRegistry.removeShutdownAction(this);
+        ScheduledFuture<?> pendingTimer = timer;
+        if (pendingTimer != null) {
+            pendingTimer.cancel(false);
+        }
+        while (!draining.compareAndSet(false, true)) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush();
+                return;
+            }
+        }
+        try {
+            while (size.get() > 0) {
+                handleBatch();
+            }
+        } finally {
+            draining.set(false);
+        }
+        log.info(">> 攒批执行器{}已关闭", name);
+    }
+
+    private CompletableFuture<R> enqueue(T item) {
+        Item<T, R> entry = new Item<>(item);
+        queue.add(entry);
+        int current = size.incrementAndGet();
+        if (closed) {
+            // 与close()并发时由后台线程处理剩余的元素
+            flush();
+        } else if (current >= maxSize) {
+            requestDrain();
+        } else if (timerArmed.compareAndSet(false, true)) {
+            try {
+                timer = ExecutorRegistry.getScheduled(ExecutorRegistry.SCHEDULED).schedule(() -> {
+                    timerArmed.set(false);
+                    flush();
+                }, maxDelayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // 定时任务线程池已关闭, 立即处理
+                timerArmed.set(false);
+                flush();
+            }
+        }
+        return entry.future;
+    }
+
+    /**
+     * 非阻塞地把批量处理提交给线程池, 线程池已满或已关闭时在当前线程处理, 不执行线程池的拒绝策略(如: 阻塞等待)
+     */
+    private void requestDrain() {
+        if (draining.compareAndSet(false, true)) {
+            SubmitStatus status;
+            if (executorName != null) {
+                status = ExecutorRegistry.trySubmit(executorName, drainTask);
+            } else if (executor instanceof InstrumentedThreadPoolExecutor) {
+                status = ((InstrumentedThreadPoolExecutor) executor).trySubmit(drainTask);
+            } else {
+                try {
+                    executor.execute(drainTask);
+                    status = SubmitStatus.ACCEPTED;
+                } catch (RejectedExecutionException e) {
+                    status = SubmitStatus.REJECTED;
+                }
+            }
+            if (status != SubmitStatus.ACCEPTED) {
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        for (;;) {
+            try {
+                boolean all = flushAllRequested.getAndSet(false);
+                int pending;
+                while ((pending = size.get()) >= maxSize || (all && pending > 0)) {
+                    handleBatch();
+                }
+            } finally {
+                draining.set(false);
+            }
+            // 处理期间又有元素攒够一批或请求了刷新, 且没有其他线程接手
+            if ((size.get() >= maxSize || flushAllRequested.get()) && draining.compareAndSet(false, true)) {
+                continue;
+            }
+            return;
+        }
+    }
+
+    private void handleBatch() {
+        List<Item<T, R>> batch = new ArrayList<>(Math.min(maxSize, size.get()));
+        Item<T, R> entry;
+        while (batch.size() < maxSize && (entry = queue.poll()) != null) {
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        size.addAndGet(-batch.size());
+        capacity.release(batch.size());
+        List<T> items = new ArrayList<>(batch.size());
+        batch.forEach(item -> items.add(item.value));
+        try {
+            List<R> results = handler.apply(items);
+            if (results == null || results.size() != batch.size()) {
+                throw new IllegalStateException("batch handler of " + name + " returned "
+                        + (results == null ? "null" : results.size() + " results") + " for " + batch.size() + " items");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            log.error(">> 攒批执行器{}处理{}个元素出错", name, batch.size(), e);
+            batch.forEach(item -> item.future.completeExceptionally(e));
+        }
+    }
+
+    private CompletableFuture<R> rejected() {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        future.completeExceptionally(new RejectedExecutionException(
+                closed ? "batcher " + name + " has been closed" : "batcher " + name + " is full"));
+        return future;
+    }
+
+    private static final class Item<T, R> {
+        private final T value;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        private Item(T value) {
+            this.value = value;
+        }
+    }
+
+    public static final class Builder<T, R> {
+        private final String name;
+        private final Function<List<T>, List<R>> handler;
+        private int maxSize = 100;
+        private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        private int capacity = 10000;
+        private Executor executor;
+
+        private Builder(String name, Function<List<T>, List<R>> handler) {
+            this.name = Objects.requireNonNull(name);
+            this.handler = Objects.requireNonNull(handler);
+        }
+
+        /**
+         * 一批最多处理的元素数量, 默认100
+         */
+        public Builder<T, R> maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * 元素最长等待多久后处理, 默认10毫秒
+         */
+        public Builder<T, R> maxDelay(long maxDelay, TimeUnit unit) {
+            this.maxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        /**
+         * 最多等待处理的元素数量, 默认10000
+         */
+        public Builder<T, R> capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * 执行批量处理函数的线程池, 默认为{@link ExecutorRegistry#FIXED}; 线程池已满时在提交元素的线程中处理
+         */
+        public Builder<T, R> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Batcher<T, R> build() {
+            if (maxSize <= 0 || capacity < maxSize || maxDelayNanos <= 0) {
+                throw new IllegalArgumentException("invalid batcher " + name + ": maxSize=" + maxSize
+                        + ", capacity=" + capacity + ", maxDelayNanos=" + maxDelayNanos);
+            }
+            return new Batcher<>(this);
+        }
+    }
+}
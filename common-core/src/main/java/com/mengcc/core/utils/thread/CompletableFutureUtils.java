@@ -0,0 +1,55 @@
+package com.mengcc.core.utils.thread;
+
+import com.mengcc.core.context.ThreadContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 带{@link ThreadContext}的异步任务, 任务执行时使用调用线程的上下文, 执行结束后清除
+ *
+ * <p>不指定线程池时使用{@link ExecutorRegistry#FIXED}, 而不是ForkJoinPool的公共线程池。
+ * 后续的回调可以用{@link ThreadContext#wrapFunction}包装。</p>
+ */
+public final class CompletableFutureUtils {
+
+    private CompletableFutureUtils() {
+    }
+
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return supplyAsync(supplier, ExecutorRegistry.get(ExecutorRegistry.FIXED));
+    }
+
+    /**
+     * @param supplier     任务
+     * @param executorName {@link ExecutorRegistry}中的线程池名称
+     * @return
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, String executorName) {
+        return supplyAsync(supplier, ExecutorRegistry.get(executorName));
+    }
+
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(ThreadContext.wrapSupplier(supplier), executor);
+    }
+
+    public static CompletableFuture<Void> runAsync(Runnable runnable) {
+        return runAsync(runnable, ExecutorRegistry.get(ExecutorRegistry.FIXED));
+    }
+
+    /**
+     * @param runnable     任务
+     * @param executorName {@link ExecutorRegistry}中的线程池名称
+     * @return
+     */
+    public static CompletableFuture<Void> runAsync(Runnable runnable, String executorName) {
+        return runAsync(runnable, ExecutorRegistry.get(executorName));
+    }
+
+    public static CompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return CompletableFuture.runAsync(ThreadContext.wrap(runnable), executor);
+    }
+}
@@ -0,0 +1,25 @@
+package com.mengcc.core.utils.thread;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 工具类内部提交给线程池的调度任务, 如{@link KeyedExecutor}的key队列和{@link Batcher}的批量处理
+ *
+ * <p>调度任务负责执行其他已接收的任务, 丢弃后这些任务再也不会执行。线程池拒绝调度任务时,
+ * {@link BackpressureRejectedHandler}即使配置了丢弃策略也不会丢弃它, 而是抛出{@link java.util.concurrent.RejectedExecutionException},
+ * 由提交方在当前线程执行。</p>
+ */
+@FunctionalInterface
+interface DispatchTask extends Runnable {
+
+    /**
+     * 是否为调度任务, 线程池中的任务可能已包装为{@link InstrumentedThreadPoolExecutor.InstrumentedTask}
+     * @param task
+     * @return
+     */
+    static boolean isDispatchTask(Runnable task) {
+        Runnable unwrapped = task instanceof InstrumentedThreadPoolExecutor.InstrumentedTask
+                ? ((InstrumentedThreadPoolExecutor.InstrumentedTask) task).delegate : task;
+        return unwrapped instanceof DispatchTask;
+    }
+}
@@ -0,0 +1,309 @@
+package com.mengcc.core.utils.thread;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 命名线程池的配置, 通过{@link #builder(String)}创建, 注册到{@link ExecutorRegistry}后按名称获取线程池
+ */
+public final class ExecutorConfig {
+
+    /**
+     * 等待队列的类型
+     */
+    public enum QueueType {
+        /** 链表队列, 容量小于等于0时不限长度 */
+        LINKED,
+        /** 数组队列, 必须指定容量 */
+        ARRAY,
+        /** 不保存任务的直接移交队列, 没有空闲线程时立即创建新线程或拒绝 */
+        SYNCHRONOUS
+    }
+
+    /**
+     * 队列已满且线程数已达上限时的拒绝策略
+     */
+    public enum RejectPolicy {
+        /** 抛出RejectedExecutionException */
+        ABORT,
+        /** 由提交任务的线程执行, 同时执行的数量超过{@link Builder#callerRunsLimit(int)}时抛出RejectedExecutionException */
+        CALLER_RUNS,
+        /** 丢弃新提交的任务 */
+        DISCARD,
+        /** 丢弃队列中最早的任务, 再重新提交; 被丢弃的任务如果是submit提交的会被取消 */
+        DISCARD_OLDEST,
+        /** 提交线程等待队列空出位置, 超过{@link Builder#blockTimeout(long, TimeUnit)}后抛出RejectedExecutionException */
+        BLOCK
+    }
+
+    private final String name;
+    private final int coreSize;
+    private final int maxSize;
+    private final long keepAliveMillis;
+    private final QueueType queueType;
+    private final int queueCapacity;
+    private final RejectPolicy rejectPolicy;
+    private final long blockTimeoutMillis;
+    private final int callerRunsLimit;
+    private final double overloadThreshold;
+    private final int adaptiveMinCore;
+    private final int adaptiveMaxCore;
+    private final String threadNamePrefix;
+    private final boolean daemon;
+    private final boolean scheduled;
+
+    private ExecutorConfig(Builder builder) {
+        this.name = builder.name;
+        this.coreSize = builder.coreSize;
+        this.maxSize = builder.maxSize;
+        this.keepAliveMillis = builder.keepAliveMillis;
+        this.queueType = builder.queueType;
+        this.queueCapacity = builder.queueCapacity;
+        this.rejectPolicy = builder.rejectPolicy;
+        this.blockTimeoutMillis = builder.blockTimeoutMillis;
+        this.callerRunsLimit = builder.callerRunsLimit;
+        this.overloadThreshold = builder.overloadThreshold;
+        this.adaptiveMinCore = builder.adaptiveMinCore;
+        this.adaptiveMaxCore = builder.adaptiveMaxCore;
+        this.threadNamePrefix = builder.threadNamePrefix == null ? builder.name + "-pool-" : builder.threadNamePrefix;
+        this.daemon = builder.daemon;
+        this.scheduled = builder.scheduled;
+    }
+
+    /**
+     * @param name 线程池名称
+     * @return
+     */
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCoreSize() {
+        return coreSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public QueueType getQueueType() {
+        return queueType;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public RejectPolicy getRejectPolicy() {
+        return rejectPolicy;
+    }
+
+    public long getBlockTimeoutMillis() {
+        return blockTimeoutMillis;
+    }
+
+    public int getCallerRunsLimit() {
+        return callerRunsLimit;
+    }
+
+    public double getOverloadThreshold() {
+        return overloadThreshold;
+    }
+
+    /**
+     * @return 是否由{@link AdaptivePoolSizer}自动调整核心线程数
+     */
+    public boolean isAdaptive() {
+        return adaptiveMaxCore > 0;
+    }
+
+    public int getAdaptiveMinCore() {
+        return adaptiveMinCore;
+    }
+
+    public int getAdaptiveMaxCore() {
+        return adaptiveMaxCore;
+    }
+
+    public String getThreadNamePrefix() {
+        return threadNamePrefix;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public boolean isScheduled() {
+        return scheduled;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorConfig{name=" + name + ", coreSize=" + coreSize + ", maxSize=" + maxSize
+                + ", keepAliveMillis=" + keepAliveMillis + ", queueType=" + queueType + ", queueCapacity=" + queueCapacity
+                + ", rejectPolicy=" + rejectPolicy + ", blockTimeoutMillis=" + blockTimeoutMillis
+                + ", callerRunsLimit=" + callerRunsLimit + ", overloadThreshold=" + overloadThreshold
+                + (isAdaptive() ? ", adaptive=[" + adaptiveMinCore + ", " + adaptiveMaxCore + "]" : "")
+                + ", threadNamePrefix=" + threadNamePrefix
+                + ", daemon=" + daemon + ", scheduled=" + scheduled + "}";
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int coreSize = Runtime.getRuntime().availableProcessors();
+        private int maxSize = -1;
+        private long keepAliveMillis = 60000L;
+        private QueueType queueType = QueueType.LINKED;
+        private int queueCapacity = 0;
+        private RejectPolicy rejectPolicy = RejectPolicy.ABORT;
+        private long blockTimeoutMillis = 1000L;
+        private int callerRunsLimit = 0;
+        private double overloadThreshold = 0.8;
+        private int adaptiveMinCore = 0;
+        private int adaptiveMaxCore = 0;
+        private String threadNamePrefix;
+        private boolean daemon = false;
+        private boolean scheduled = false;
+
+        private Builder(String name) {
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("executor name must not be blank");
+            }
+            this.name = name;
+        }
+
+        /**
+         * 核心线程数, 默认为cpu核数
+         */
+        public Builder coreSize(int coreSize) {
+            this.coreSize = coreSize;
+            return this;
+        }
+
+        /**
+         * 最大线程数, 默认与核心线程数相同
+         */
+        public Builder maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * 非核心线程闲置多久后回收, 默认60秒
+         */
+        public Builder keepAlive(long keepAlive, TimeUnit unit) {
+            this.keepAliveMillis = unit.toMillis(keepAlive);
+            return this;
+        }
+
+        /**
+         * 等待队列的类型和容量, 默认为不限长度的链表队列
+         */
+        public Builder queue(QueueType queueType, int queueCapacity) {
+            this.queueType = queueType;
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * 拒绝策略, 默认抛出异常
+         */
+        public Builder rejectPolicy(RejectPolicy rejectPolicy) {
+            this.rejectPolicy = rejectPolicy;
+            return this;
+        }
+
+        /**
+         * {@link RejectPolicy#BLOCK}时提交线程最长的等待时间, 默认1秒
+         */
+        public Builder blockTimeout(long timeout, TimeUnit unit) {
+            this.blockTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * {@link RejectPolicy#CALLER_RUNS}时最多同时有多少个任务在提交线程中执行, 默认0表示不限制
+         */
+        public Builder callerRunsLimit(int callerRunsLimit) {
+            this.callerRunsLimit = callerRunsLimit;
+            return this;
+        }
+
+        /**
+         * 队列使用率达到多少时视为过载, 见{@link ExecutorMetrics#isOverloaded()}, 默认0.8
+         */
+        public Builder overloadThreshold(double overloadThreshold) {
+            this.overloadThreshold = overloadThreshold;
+            return this;
+        }
+
+        /**
+         * 开启自动调整: 根据吞吐量和排队时间在[minCore, maxCore]之间调整核心线程数, 见{@link AdaptivePoolSizer}
+         */
+        public Builder adaptive(int minCore, int maxCore) {
+            this.adaptiveMinCore = minCore;
+            this.adaptiveMaxCore = maxCore;
+            return this;
+        }
+
+        /**
+         * 线程名称的前缀, 后面接线程序号, 默认为: 名称-pool-
+         */
+        public Builder threadNamePrefix(String threadNamePrefix) {
+            this.threadNamePrefix = threadNamePrefix;
+            return this;
+        }
+
+        /**
+         * 是否为守护线程, 默认否
+         */
+        public Builder daemon(boolean daemon) {
+            this.daemon = daemon;
+            return this;
+        }
+
+        /**
+         * 是否为定时任务线程池, 定时任务线程池只使用核心线程数, 队列和拒绝策略的配置不生效
+         */
+        public Builder scheduled(boolean scheduled) {
+            this.scheduled = scheduled;
+            return this;
+        }
+
+        public ExecutorConfig build() {
+            if (maxSize < 0) {
+                maxSize = coreSize;
+            }
+            if (coreSize < 0 || maxSize <= 0 || maxSize < coreSize) {
+                throw new IllegalArgumentException("invalid pool size of executor " + name
+                        + ": coreSize=" + coreSize + ", maxSize=" + maxSize);
+            }
+            if (queueType == null || rejectPolicy == null) {
+                throw new IllegalArgumentException("queueType and rejectPolicy of executor " + name + " must not be null");
+            }
+            if (blockTimeoutMillis < 0 || callerRunsLimit < 0 || overloadThreshold <= 0 || overloadThreshold > 1) {
+                throw new IllegalArgumentException("invalid backpressure settings of executor " + name
+                        + ": blockTimeoutMillis=" + blockTimeoutMillis + ", callerRunsLimit=" + callerRunsLimit
+                        + ", overloadThreshold=" + overloadThreshold);
+            }
+            if (adaptiveMaxCore > 0 && (scheduled || adaptiveMinCore <= 0 || adaptiveMaxCore < adaptiveMinCore
+                    || coreSize < adaptiveMinCore || coreSize > adaptiveMaxCore)) {
+                throw new IllegalArgumentException("invalid adaptive sizing of executor " + name + ": minCore="
+                        + adaptiveMinCore + ", maxCore=" + adaptiveMaxCore + ", coreSize=" + coreSize + ", scheduled=" + scheduled);
+            }
+            if (queueType == QueueType.ARRAY && queueCapacity <= 0) {
+                throw new IllegalArgumentException("array queue of executor " + name + " must have a positive capacity");
+            }
+            return new ExecutorConfig(this);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.mengcc.core.utils.thread;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 线程池的运行指标: 任务的排队等待时间和执行时间分布、完成/失败/拒绝数量以及当前执行最久的任务
+ *
+ * <p>由{@link ExecutorRegistry}创建的线程池自动记录, 通过{@link ExecutorRegistry#metrics(String)}获取,
+ * 同时注册到JMX。等待时间和执行时间从线程池创建起累计。</p>
+ */
+public class ExecutorMetrics implements ExecutorMetricsMXBean {
+
+    private final String name;
+    private volatile ThreadPoolExecutor executor;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final double overloadThreshold;
+
+    /** 正在执行的任务, 执行线程 -> 任务 */
+    private final Map<Thread, RunningTask> running = new ConcurrentHashMap<>();
+
+    ExecutorMetrics(String name, double overloadThreshold) {
+        this.name = name;
+        this.overloadThreshold = overloadThreshold;
+    }
+
+    void attach(ThreadPoolExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 任务开始执行前, 在执行线程中调用
+     * @param task           任务
+     * @param queueWaitNanos 任务在队列中等待的时长
+     */
+    void taskStarted(Runnable task, long queueWaitNanos) {
+        queueWait.record(queueWaitNanos);
+        running.put(Thread.currentThread(), new RunningTask(task, System.nanoTime()));
+    }
+
+    /**
+     * 任务执行结束后, 在执行线程中调用
+     * @param error 任务抛出的异常, 正常结束为{@code null}
+     */
+    void taskFinished(Throwable error) {
+        RunningTask task = running.remove(Thread.currentThread());
+        if (task != null) {
+            runTime.record(System.nanoTime() - task.startNanos);
+        }
+        if (error != null) {
+            failed.increment();
+        }
+    }
+
+    LatencyHistogram queueWaitHistogram() {
+        return queueWait;
+    }
+
+    LatencyHistogram runTimeHistogram() {
+        return runTime;
+    }
+
+    void taskRejected() {
+        rejected.increment();
+    }
+
+    void taskDiscarded() {
+        discarded.increment();
+    }
+
+    void taskCallerRuns() {
+        callerRuns.increment();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getCorePoolSize();
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getPoolSize() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getPoolSize();
+    }
+
+    @Override
+    public int getActiveCount() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getQueue().size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            return 0;
+        }
+        long capacity = (long) current.getQueue().size() + current.getQueue().remainingCapacity();
+        return (int) Math.min(capacity, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public double getQueueUtilization() {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            return 0;
+        }
+        int size = current.getQueue().size();
+        long capacity = (long) size + current.getQueue().remainingCapacity();
+        // 直接移交的队列没有容量, 以线程是否用满衡量
+        if (capacity == 0) {
+            return current.getActiveCount() >= current.getMaximumPoolSize() ? 1 : 0;
+        }
+        return (double) size / capacity;
+    }
+
+    @Override
+    public boolean isOverloaded() {
+        return getQueueUtilization() >= overloadThreshold;
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return runTime.count();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getDiscardedCount() {
+        return discarded.sum();
+    }
+
+    @Override
+    public long getCallerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    @Override
+    public double getQueueWaitMeanMillis() {
+        return queueWait.meanMillis();
+    }
+
+    @Override
+    public double getQueueWaitP99Millis() {
+        return queueWait.percentileMillis(99);
+    }
+
+    @Override
+    public double getQueueWaitMaxMillis() {
+        return queueWait.maxMillis();
+    }
+
+    @Override
+    public double getRunTimeMeanMillis() {
+        return runTime.meanMillis();
+    }
+
+    @Override
+    public double getRunTimeP99Millis() {
+        return runTime.percentileMillis(99);
+    }
+
+    @Override
+    public double getRunTimeMaxMillis() {
+        return runTime.maxMillis();
+    }
+
+    /**
+     * 排队等待时间的百分位
+     * @param percentile 0到100之间的百分位
+     * @return 毫秒数, 精度为2的幂微秒
+     */
+    public double queueWaitPercentileMillis(double percentile) {
+        return queueWait.percentileMillis(percentile);
+    }
+
+    /**
+     * 执行时间的百分位
+     * @param percentile 0到100之间的百分位
+     * @return 毫秒数, 精度为2的幂微秒
+     */
+    public double runTimePercentileMillis(double percentile) {
+        return runTime.percentileMillis(percentile);
+    }
+
+    @Override
+    public long getLongestRunningMillis() {
+        Map.Entry<Thread, RunningTask> longest = longestRunning();
+        return longest == null ? 0L : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - longest.getValue().startNanos);
+    }
+
+    @Override
+    public String getLongestRunningTask() {
+        Map.Entry<Thread, RunningTask> longest = longestRunning();
+        return longest == null ? null : longest.getValue().task + " on " + longest.getKey().getName();
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorMetrics{name=" + name + ", poolSize=" + getPoolSize() + ", active=" + getActiveCount()
+                + ", queued=" + getQueueSize() + ", completed=" + getCompletedCount() + ", failed=" + getFailedCount()
+                + ", rejected=" + getRejectedCount() + ", discarded=" + getDiscardedCount()
+                + ", callerRuns=" + getCallerRunsCount() + ", queueWaitP99Millis=" + getQueueWaitP99Millis()
+                + ", runTimeP99Millis=" + getRunTimeP99Millis() + ", longestRunningMillis=" + getLongestRunningMillis() + "}";
+    }
+
+    private Map.Entry<Thread, RunningTask> longestRunning() {
+        Map.Entry<Thread, RunningTask> longest = null;
+        for (Map.Entry<Thread, RunningTask> entry : running.entrySet()) {
+            if (longest == null || entry.getValue().startNanos < longest.getValue().startNanos) {
+                longest = entry;
+            }
+        }
+        return longest;
+    }
+
+    private static final class RunningTask {
+        final Runnable task;
+        final long startNanos;
+
+        RunningTask(Runnable task, long startNanos) {
+            this.task = task;
+            this.startNanos = startNanos;
+        }
+    }
+}
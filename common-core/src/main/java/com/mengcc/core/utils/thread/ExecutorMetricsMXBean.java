@@ -0,0 +1,76 @@
+package com.mengcc.core.utils.thread;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 线程池的运行指标, 以{@code com.mengcc.core:type=Executor,name=线程池名称}注册到JMX
+ */
+public interface ExecutorMetricsMXBean {
+
+    String getName();
+
+    int getCorePoolSize();
+
+    int getMaximumPoolSize();
+
+    int getPoolSize();
+
+    int getActiveCount();
+
+    int getQueueSize();
+
+    /**
+     * 队列容量, 不限长度的队列为{@link Integer#MAX_VALUE}
+     */
+    int getQueueCapacity();
+
+    /**
+     * 队列使用率, 0到1之间
+     */
+    double getQueueUtilization();
+
+    /**
+     * 队列使用率是否达到过载阈值, 调用方可以据此在提交前主动放弃非必要的任务
+     */
+    boolean isOverloaded();
+
+    long getCompletedCount();
+
+    long getFailedCount();
+
+    long getRejectedCount();
+
+    /**
+     * 按DISCARD、DISCARD_OLDEST策略丢弃的任务数
+     */
+    long getDiscardedCount();
+
+    /**
+     * 按CALLER_RUNS策略在提交线程中执行的任务数
+     */
+    long getCallerRunsCount();
+
+    double getQueueWaitMeanMillis();
+
+    double getQueueWaitP99Millis();
+
+    double getQueueWaitMaxMillis();
+
+    double getRunTimeMeanMillis();
+
+    double getRunTimeP99Millis();
+
+    double getRunTimeMaxMillis();
+
+    /**
+     * 当前执行时间最长的任务已执行的时长
+     * @return 没有正在执行的任务时返回0
+     */
+    long getLongestRunningMillis();
+
+    /**
+     * 当前执行时间最长的任务及其所在的线程
+     * @return 没有正在执行的任务时返回{@code null}
+     */
+    String getLongestRunningTask();
+}
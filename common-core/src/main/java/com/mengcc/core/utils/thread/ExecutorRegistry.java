@@ -0,0 +1,553 @@
+package com.mengcc.core.utils.thread;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 命名线程池的注册表
+ *
+ * <p>线程池按名称配置, 首次获取时按配置创建, 之后一直返回同一个线程池。不同的业务可以注册各自的线程池,
+ * 避免慢任务占满公共线程池影响其他业务。{@link FixedThreadPoolUtils}、{@link SimpleThreadPoolUtils}
+ * 和{@link ScheduledThreadPoolUtils}分别使用{@link #FIXED}、{@link #SIMPLE}和{@link #SCHEDULED}线程池,
+ * 在首次使用前重新注册同名的配置即可调整它们的大小。</p>
+ * <p>创建的线程池都会记录运行指标, 通过{@link #metrics(String)}获取, 同时以
+ * {@code com.mengcc.core:type=Executor,name=线程池名称}注册到JMX。</p>
+ * <p>JVM退出时通过{@link #shutdownAll(long, TimeUnit)}在时间预算内处理完已提交的任务, 预算见{@link #setShutdownTimeout(long, TimeUnit)};
+ * 由Spring等容器管理生命周期时, 可以调用{@link #removeShutdownHook()}改为在容器关闭时调用。</p>
+ */
+@Slf4j
+public final class ExecutorRegistry {
+
+    /** {@link FixedThreadPoolUtils}使用的线程池 */
+    public static final String FIXED = "fixed";
+
+    /** {@link SimpleThreadPoolUtils}使用的线程池 */
+    public static final String SIMPLE = "simple";
+
+    /** {@link ScheduledThreadPoolUtils}使用的线程池 */
+    public static final String SCHEDULED = "scheduled";
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final Map<String, ExecutorConfig> CONFIGS = new ConcurrentHashMap<>();
+
+    private static final Map<String, ThreadPoolExecutor> EXECUTORS = new ConcurrentHashMap<>();
+
+    private static final Map<String, ExecutorMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private static final Map<String, AdaptivePoolSizer> SIZERS = new ConcurrentHashMap<>();
+
+    /** 自动调整核心线程数的采样周期 */
+    private static final long ADAPTIVE_INTERVAL_MILLIS = 5000L;
+
+    /** 关闭线程池前先关闭的组件, 组件 -> 关闭动作 */
+    private static final Map<Object, ShutdownAction> SHUTDOWN_ACTIONS = new ConcurrentHashMap<>();
+
+    private static final Thread SHUTDOWN_HOOK = new Thread(ExecutorRegistry::shutdownOnExit, "executor-registry-shutdown");
+
+    /** JVM退出时关闭线程池的时间预算 */
+    private static volatile long shutdownTimeoutMillis = 30000L;
+
+    /** 安装和移除JVM退出钩子的锁, 不使用类锁, 避免在shutdownAll期间获取线程池时等待关闭结束 */
+    private static final Object HOOK_LOCK = new Object();
+
+    /** JVM退出钩子是否已安装 */
+    private static boolean shutdownHookInstalled = true;
+
+    /** 是否执行过{@link #shutdownAll(long, TimeUnit)}, 之后重新创建的线程池使用守护线程 */
+    private static volatile boolean shutDown = false;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(SHUTDOWN_HOOK);
+        register(ExecutorConfig.builder(FIXED).coreSize(50).maxSize(50)
+                .queue(ExecutorConfig.QueueType.LINKED, 10000)
+                .rejectPolicy(ExecutorConfig.RejectPolicy.BLOCK).blockTimeout(5, TimeUnit.SECONDS).build());
+        register(ExecutorConfig.builder(SIMPLE).coreSize(CPU_COUNT + 1).maxSize(CPU_COUNT * 2 + 1)
+                .keepAlive(1, TimeUnit.SECONDS).queue(ExecutorConfig.QueueType.ARRAY, 20)
+                .rejectPolicy(ExecutorConfig.RejectPolicy.BLOCK).blockTimeout(1, TimeUnit.SECONDS).build());
+        register(ExecutorConfig.builder(SCHEDULED).coreSize(10).scheduled(true).build());
+    }
+
+    private ExecutorRegistry() {
+    }
+
+    /**
+     * 注册线程池的配置, 同名的配置会被覆盖
+     * @param config
+     * @throws IllegalStateException 同名的线程池已经创建
+     */
+    public static void register(ExecutorConfig config) {
+        CONFIGS.compute(config.getName(), (name, old) -> {
+            if (EXECUTORS.containsKey(name)) {
+                throw new IllegalStateException("executor " + name + " has already been created");
+            }
+            return config;
+        });
+    }
+
+    /**
+     * 注册线程池的配置, 已有同名的配置时不覆盖
+     * @param config
+     * @return 是否注册了新的配置
+     */
+    public static boolean registerIfAbsent(ExecutorConfig config) {
+        return CONFIGS.putIfAbsent(config.getName(), config) == null;
+    }
+
+    /**
+     * 获取线程池, 首次获取时按配置创建
+     * @param name 线程池名称
+     * @return
+     * @throws IllegalArgumentException 没有注册该名称的配置
+     */
+    public static ThreadPoolExecutor get(String name) {
+        ThreadPoolExecutor executor = EXECUTORS.get(name);
+        if (executor != null) {
+            return executor;
+        }
+        executor = EXECUTORS.computeIfAbsent(name, theName -> create(getConfig(theName)));
+        startSizerIfAdaptive(name, executor);
+        if (shutDown) {
+            // 容器关闭后才获取的线程池不会再有人关闭, 恢复JVM退出钩子
+            installShutdownHook();
+        }
+        return executor;
+    }
+
+    /**
+     * 获取定时任务线程池, 首次获取时按配置创建
+     * @param name 线程池名称
+     * @return
+     * @throws IllegalArgumentException 没有注册该名称的配置, 或者该配置不是定时任务线程池
+     */
+    public static ScheduledThreadPoolExecutor getScheduled(String name) {
+        if (!getConfig(name).isScheduled()) {
+            throw new IllegalArgumentException("executor " + name + " is not a scheduled executor");
+        }
+        return (ScheduledThreadPoolExecutor) get(name);
+    }
+
+    /**
+     * 获取线程池的配置
+     * @param name 线程池名称
+     * @return
+     * @throws IllegalArgumentException 没有注册该名称的配置
+     */
+    public static ExecutorConfig getConfig(String name) {
+        ExecutorConfig config = CONFIGS.get(name);
+        if (config == null) {
+            throw new IllegalArgumentException("no executor registered with name " + name);
+        }
+        return config;
+    }
+
+    /**
+     * 已注册的线程池名称
+     * @return
+     */
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(CONFIGS.keySet());
+    }
+
+    /**
+     * 获取线程池的运行指标
+     * @param name 线程池名称
+     * @return 线程池尚未创建时返回{@code null}
+     */
+    public static ExecutorMetrics metrics(String name) {
+        return METRICS.get(name);
+    }
+
+    /**
+     * 所有已创建的线程池的运行指标
+     * @return 线程池名称 -> 运行指标
+     */
+    public static Map<String, ExecutorMetrics> allMetrics() {
+        return Collections.unmodifiableMap(METRICS);
+    }
+
+    /**
+     * 线程池的队列使用率是否达到过载阈值, 调用方可以在提交前检查, 主动放弃非必要的任务
+     * @param name 线程池名称
+     * @return 线程池尚未创建时返回false
+     */
+    public static boolean isOverloaded(String name) {
+        ExecutorMetrics metrics = METRICS.get(name);
+        return metrics != null && metrics.isOverloaded();
+    }
+
+    /**
+     * 非阻塞地提交任务: 队列已满时不等待、不在当前线程执行, 也不挤掉其他任务
+     * @param name 线程池名称
+     * @param task 任务
+     * @return 提交结果
+     */
+    public static SubmitStatus trySubmit(String name, Runnable task) {
+        ThreadPoolExecutor executor = get(name);
+        if (executor instanceof InstrumentedThreadPoolExecutor) {
+            return ((InstrumentedThreadPoolExecutor) executor).trySubmit(task);
+        }
+        if (executor.isShutdown()) {
+            return SubmitStatus.SHUTDOWN;
+        }
+        // 定时任务线程池的队列不限长度, 只在关闭后拒绝
+        try {
+            executor.execute(task);
+            return SubmitStatus.ACCEPTED;
+        } catch (RejectedExecutionException e) {
+            return SubmitStatus.SHUTDOWN;
+        }
+    }
+
+    /**
+     * 设置JVM退出时关闭线程池的时间预算, 默认30秒
+     * @param timeout
+     * @param unit
+     */
+    public static void setShutdownTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("shutdown timeout must not be negative");
+        }
+        shutdownTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * 移除JVM退出时关闭线程池的钩子, 由调用方负责调用{@link #shutdownAll(long, TimeUnit)}
+     */
+    public static void removeShutdownHook() {
+        synchronized (HOOK_LOCK) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(SHUTDOWN_HOOK);
+                shutdownHookInstalled = false;
+            } catch (IllegalStateException e) {
+                // JVM正在退出, 钩子已经在执行
+            }
+        }
+    }
+
+    /**
+     * 关闭所有已创建的线程池, 在时间预算内处理完已提交的任务。
+     * <p>依次关闭: 向线程池提交任务的组件(如: {@link Batcher}处理完剩余的元素, {@link HashedWheelTimer}停止时间轮,
+     * {@link VirtualThreadPoolUtils}等待任务结束), 自动调整核心线程数的任务, 普通线程池, 最后是定时任务线程池。
+     * 定时任务线程池不等待尚未执行的延迟任务和周期任务, 延迟任务直接计为放弃的任务。超过预算后仍在队列中的任务被移除,
+     * 仍在执行的任务被中断, 都记录在返回的结果中。</p>
+     * <p>关闭后的线程池从注册表中移除, 配置保留, 之后再获取同名的线程池时重新创建; 重新创建的线程池使用守护线程,
+     * 并且恢复已移除的JVM退出钩子, 避免没有人关闭的线程池阻止JVM退出。</p>
+     * @param timeout 时间预算
+     * @param unit    时间单位
+     * @return 放弃的任务
+     */
+    public static synchronized ShutdownReport shutdownAll(long timeout, TimeUnit unit) {
+        shutDown = true;
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(Math.max(timeout, 0L));
+        Map<String, List<Runnable>> abandonedTasks = new LinkedHashMap<>();
+        Map<String, Integer> abandonedCounts = new LinkedHashMap<>();
+        Map<String, Integer> interruptedCounts = new LinkedHashMap<>();
+        Map<String, Throwable> errors = new LinkedHashMap<>();
+
+        for (Map.Entry<Object, ShutdownAction> entry : new ArrayList<>(SHUTDOWN_ACTIONS.entrySet())) {
+            ShutdownAction action = entry.getValue();
+            try {
+                int abandoned = action.callback.shutdown(deadline);
+                if (abandoned > 0) {
+                    abandonedCounts.merge(action.name, abandoned, Integer::sum);
+                }
+            } catch (Exception e) {
+                log.warn(">> 关闭{}失败", action.name, e);
+                errors.put(action.name, e);
+            }
+            SHUTDOWN_ACTIONS.remove(entry.getKey(), action);
+        }
+        SIZERS.values().forEach(AdaptivePoolSizer::stop);
+
+        // 普通线程池中的任务可能还会提交定时任务, 定时任务线程池最后关闭
+        List<Map.Entry<String, ThreadPoolExecutor>> pools = new ArrayList<>();
+        List<Map.Entry<String, ThreadPoolExecutor>> scheduledPools = new ArrayList<>();
+        for (Map.Entry<String, ThreadPoolExecutor> entry : EXECUTORS.entrySet()) {
+            (entry.getValue() instanceof ScheduledThreadPoolExecutor ? scheduledPools : pools).add(entry);
+        }
+        drain(pools, deadline, abandonedTasks, abandonedCounts, interruptedCounts);
+        drain(scheduledPools, deadline, abandonedTasks, abandonedCounts, interruptedCounts);
+        pools.addAll(scheduledPools);
+        pools.forEach(entry -> unregister(entry.getKey(), entry.getValue()));
+
+        ShutdownReport report = new ShutdownReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                abandonedTasks, abandonedCounts, interruptedCounts, errors);
+        if (report.isClean()) {
+            log.info(">> 已关闭{}个线程池, 耗时{}ms", pools.size(), report.getElapsedMillis());
+        } else {
+            log.warn(">> 已关闭{}个线程池, 有未处理完的任务: {}", pools.size(), report);
+        }
+        return report;
+    }
+
+    /**
+     * 注册在线程池之前关闭的组件, 组件关闭后应调用{@link #removeShutdownAction(Object)}
+     * @param owner    组件
+     * @param name     组件的名称, 用于关闭的结果和日志
+     * @param callback 关闭动作
+     */
+    static void addShutdownAction(Object owner, String name, ShutdownCallback callback) {
+        SHUTDOWN_ACTIONS.put(owner, new ShutdownAction(name, callback));
+    }
+
+    static void removeShutdownAction(Object owner) {
+        SHUTDOWN_ACTIONS.remove(owner);
+    }
+
+    /**
+     * 获取已创建的线程池, 不会触发创建
+     * @return 尚未创建时返回{@code null}
+     */
+    static ThreadPoolExecutor getIfCreated(String name) {
+        return EXECUTORS.get(name);
+    }
+
+    private static ThreadPoolExecutor create(ExecutorConfig config) {
+        boolean daemon = config.isDaemon();
+        if (shutDown && !daemon) {
+            log.warn(">> 线程池{}在关闭所有线程池之后重新创建, 改用守护线程以免阻止JVM退出", config.getName());
+            daemon = true;
+        }
+        ThreadFactory threadFactory = new BasicThreadFactory.Builder()
+                .namingPattern(config.getThreadNamePrefix() + "%d")
+                .daemon(daemon)
+                .build();
+        ExecutorMetrics metrics = new ExecutorMetrics(config.getName(), config.getOverloadThreshold());
+        RejectedExecutionHandler handler = new BackpressureRejectedHandler(config, metrics);
+        ThreadPoolExecutor executor;
+        if (config.isScheduled()) {
+            executor = new InstrumentedScheduledThreadPoolExecutor(config.getCoreSize(), threadFactory, handler, metrics);
+        } else {
+            executor = new InstrumentedThreadPoolExecutor(config.getCoreSize(), config.getMaxSize(),
+                    config.getKeepAliveMillis(), TimeUnit.MILLISECONDS,
+                    newQueue(config), threadFactory, handler, metrics);
+        }
+        METRICS.put(config.getName(), metrics);
+        registerMBean(metrics);
+        log.info(">> 创建线程池: {}", config);
+        return executor;
+    }
+
+    /**
+     * 在computeIfAbsent之外启动, 启动时会获取定时任务线程池
+     */
+    private static void startSizerIfAdaptive(String name, ThreadPoolExecutor executor) {
+        ExecutorConfig config = CONFIGS.get(name);
+        if (config == null || !config.isAdaptive() || SIZERS.containsKey(name)) {
+            return;
+        }
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(name, executor, config.getAdaptiveMinCore(),
+                config.getAdaptiveMaxCore(), ADAPTIVE_INTERVAL_MILLIS);
+        if (SIZERS.putIfAbsent(name, sizer) == null) {
+            sizer.start();
+        }
+    }
+
+    /**
+     * 关闭线程池并等待到截止时间, 之后强制关闭
+     */
+    private static void drain(List<Map.Entry<String, ThreadPoolExecutor>> pools, long deadline,
+                              Map<String, List<Runnable>> abandonedTasks, Map<String, Integer> abandonedCounts,
+                              Map<String, Integer> interruptedCounts) {
+        for (Map.Entry<String, ThreadPoolExecutor> entry : pools) {
+            ThreadPoolExecutor executor = entry.getValue();
+            if (!(executor instanceof ScheduledThreadPoolExecutor)) {
+                executor.shutdown();
+                continue;
+            }
+            // 不等待尚未到期的任务, 否则一个延迟很长的任务就会耗尽整个预算
+            ScheduledThreadPoolExecutor scheduled = (ScheduledThreadPoolExecutor) executor;
+            scheduled.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            scheduled.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+            List<Runnable> queued = new ArrayList<>(scheduled.getQueue());
+            scheduled.shutdown();
+            List<Runnable> dropped = new ArrayList<>();
+            for (Runnable task : queued) {
+                // 关闭时被取消的延迟任务, 周期任务不计入
+                if (task instanceof RunnableScheduledFuture && !((RunnableScheduledFuture<?>) task).isPeriodic()
+                        && ((RunnableScheduledFuture<?>) task).isCancelled()) {
+                    dropped.add(task);
+                }
+            }
+            addAbandoned(entry.getKey(), dropped, abandonedTasks, abandonedCounts);
+        }
+        boolean interrupted = false;
+        for (Map.Entry<String, ThreadPoolExecutor> entry : pools) {
+            ThreadPoolExecutor executor = entry.getValue();
+            try {
+                if (!interrupted && executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            int active = executor.getActiveCount();
+            List<Runnable> dropped = new ArrayList<>();
+            for (Runnable task : executor.shutdownNow()) {
+                // 跳过已取消的任务
+                if (!(task instanceof Future && ((Future<?>) task).isDone())) {
+                    dropped.add(task);
+                }
+            }
+            addAbandoned(entry.getKey(), dropped, abandonedTasks, abandonedCounts);
+            if (active > 0) {
+                interruptedCounts.put(entry.getKey(), active);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 解开线程池内部的包装后记录放弃的任务, {@link KeyedExecutor}的调度任务展开为其中排队的任务
+     */
+    private static void addAbandoned(String name, List<Runnable> dropped,
+                                     Map<String, List<Runnable>> abandonedTasks, Map<String, Integer> abandonedCounts) {
+        List<Runnable> tasks = new ArrayList<>();
+        for (Runnable task : dropped) {
+            if (task instanceof InstrumentedThreadPoolExecutor.InstrumentedTask) {
+                task = ((InstrumentedThreadPoolExecutor.InstrumentedTask) task).delegate;
+            }
+            if (task instanceof KeyedExecutor.KeyQueue) {
+                tasks.addAll(((KeyedExecutor<?>.KeyQueue) task).drainTasks());
+            } else {
+                tasks.add(task);
+            }
+        }
+        if (!tasks.isEmpty()) {
+            abandonedTasks.computeIfAbsent(name, key -> new ArrayList<>()).addAll(tasks);
+            abandonedCounts.merge(name, tasks.size(), Integer::sum);
+        }
+    }
+
+    /**
+     * 移除已关闭的线程池及其运行指标和自动调整任务, 之后可以按配置重新创建
+     */
+    private static void unregister(String name, ThreadPoolExecutor executor) {
+        if (!EXECUTORS.remove(name, executor)) {
+            return;
+        }
+        SIZERS.remove(name);
+        ExecutorMetrics metrics = METRICS.remove(name);
+        if (metrics != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = objectName(name);
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                log.warn(">> 线程池{}的运行指标从JMX注销失败", name, e);
+            }
+        }
+    }
+
+    private static void installShutdownHook() {
+        synchronized (HOOK_LOCK) {
+            if (shutdownHookInstalled) {
+                return;
+            }
+            try {
+                Runtime.getRuntime().addShutdownHook(SHUTDOWN_HOOK);
+                shutdownHookInstalled = true;
+                log.info(">> 关闭所有线程池之后又创建了线程池, 恢复JVM退出时关闭线程池的钩子");
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                // JVM正在退出, 或者钩子已经执行过
+            }
+        }
+    }
+
+    private static void shutdownOnExit() {
+        if (!SHUTDOWN_ACTIONS.isEmpty() || EXECUTORS.values().stream().anyMatch(executor -> !executor.isShutdown())) {
+            shutdownAll(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void registerMBean(ExecutorMetrics metrics) {
+        try {
+            ObjectName objectName = objectName(metrics.getName());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(metrics, objectName);
+        } catch (JMException e) {
+            log.warn(">> 线程池{}的运行指标注册到JMX失败", metrics.getName(), e);
+        }
+    }
+
+    private static ObjectName objectName(String name) throws MalformedObjectNameException {
+        // 名称中含有ObjectName的保留字符时才加引号, 便于按名称直接查找
+        if (StringUtils.containsAny(name, ",=:\"*?\n")) {
+            name = ObjectName.quote(name);
+        }
+        return new ObjectName("com.mengcc.core:type=Executor,name=" + name);
+    }
+
+    private static BlockingQueue<Runnable> newQueue(ExecutorConfig config) {
+        switch (config.getQueueType()) {
+            case ARRAY:
+                return new ArrayBlockingQueue<>(config.getQueueCapacity());
+            case SYNCHRONOUS:
+                return new SynchronousQueue<>();
+            case LINKED:
+            default:
+                return config.getQueueCapacity() > 0
+                        ? new LinkedBlockingQueue<>(config.getQueueCapacity()) : new LinkedBlockingQueue<>();
+        }
+    }
+
+    /**
+     * 组件的关闭动作
+     */
+    @FunctionalInterface
+    interface ShutdownCallback {
+        /**
+         * @param deadlineNanos 关闭的截止时间, {@link System#nanoTime()}的绝对值
+         * @return 放弃的任务数
+         * @throws Exception
+         */
+        int shutdown(long deadlineNanos) throws Exception;
+    }
+
+    private static final class ShutdownAction {
+        private final String name;
+        private final ShutdownCallback callback;
+
+        private ShutdownAction(String name, ShutdownCallback callback) {
+            this.name = name;
+            this.callback = callback;
+        }
+    }
+}
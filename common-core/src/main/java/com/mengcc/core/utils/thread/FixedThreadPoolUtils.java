@@ -1,27 +1,18 @@
 package com.mengcc.core.utils.thread;
 
-import org.apache.poi.ss.formula.functions.T;
-
 import java.util.Objects;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author zhouzq
  * @date 2019/8/13
- * @desc 固定大小线程池50个
+ * @desc 固定大小线程池50个, 使用{@link ExecutorRegistry#FIXED}线程池, 队列最多10000个任务,
+ * 队列满时提交线程最多等待5秒
  */
 public class FixedThreadPoolUtils implements ThreadPoolUtils {
 
-    /**
-     *  线程池的对象
-     */
-    private ThreadPoolExecutor executor;
-
-    /**
-     * 固定大小
-     */
-    private static final int nThreads = 50;
-
     private FixedThreadPoolUtils() {
     }
 
@@ -37,25 +28,17 @@ public class FixedThreadPoolUtils implements ThreadPoolUtils {
         return threadPool;
     }
 
+    /**
+     * 线程池的对象, 由注册表保证只创建一次
+     */
+    private ThreadPoolExecutor executor() {
+        return ExecutorRegistry.get(ExecutorRegistry.FIXED);
+    }
+
     @Override
     public void execute(Runnable r) {
-        if (executor == null) {
-            /**
-             * corePoolSize:核心线程数
-             * maximumPoolSize：线程池所容纳最大线程数(workQueue队列满了之后才开启)
-             * keepAliveTime：非核心线程闲置时间超时时长
-             * unit：keepAliveTime的单位
-             * workQueue：等待队列，存储还未执行的任务
-             * threadFactory：线程创建的工厂
-             * handler：异常处理机制
-             *
-             */
-            executor = new ThreadPoolExecutor(nThreads, nThreads,
-                    0L, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<>());
-        }
         // 把一个任务丢到了线程池中
-        executor.execute(r);
+        executor().execute(r);
     }
 
     /**
@@ -64,24 +47,27 @@ public class FixedThreadPoolUtils implements ThreadPoolUtils {
      * @return
      */
     @Override
-    public Future<T> submit(Callable<T> r) {
-        if (executor == null) {
-            /**
-             * corePoolSize:核心线程数
-             * maximumPoolSize：线程池所容纳最大线程数(workQueue队列满了之后才开启)
-             * keepAliveTime：非核心线程闲置时间超时时长
-             * unit：keepAliveTime的单位
-             * workQueue：等待队列，存储还未执行的任务
-             * threadFactory：线程创建的工厂
-             * handler：异常处理机制
-             *
-             */
-            executor = new ThreadPoolExecutor(nThreads, nThreads,
-                    0L, TimeUnit.MICROSECONDS, new ArrayBlockingQueue<>(20),
-                    Executors.defaultThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
-        }
+    public <T> Future<T> submit(Callable<T> r) {
         // 把一个任务丢到了线程池中
-        return executor.submit(r);
+        return executor().submit(r);
+    }
+
+    /**
+     * 非阻塞地提交任务, 队列已满时直接返回{@link SubmitStatus#REJECTED}
+     * @param r
+     * @return
+     */
+    @Override
+    public SubmitStatus trySubmit(Runnable r) {
+        return ExecutorRegistry.trySubmit(ExecutorRegistry.FIXED, r);
+    }
+
+    /**
+     * 队列使用率是否达到过载阈值, 可以在提交非必要的任务前检查
+     * @return
+     */
+    public boolean isOverloaded() {
+        return ExecutorRegistry.isOverloaded(ExecutorRegistry.FIXED);
     }
 
     /**
@@ -91,7 +77,7 @@ public class FixedThreadPoolUtils implements ThreadPoolUtils {
     @Override
     public void cancel(Runnable r) {
         if (r != null) {
-            executor.getQueue().remove(r);
+            executor().remove(r);
         }
     }
 
@@ -101,6 +87,7 @@ public class FixedThreadPoolUtils implements ThreadPoolUtils {
      * @return
      */
     public int taskSize(){
+        ThreadPoolExecutor executor = ExecutorRegistry.getIfCreated(ExecutorRegistry.FIXED);
         return Objects.isNull(executor) ? 0 : executor.getActiveCount() + executor.getQueue().size() ;
     }
 
@@ -108,6 +95,7 @@ public class FixedThreadPoolUtils implements ThreadPoolUtils {
      * 执行完任务关闭
      */
     public void shutdown(){
+        ThreadPoolExecutor executor = ExecutorRegistry.getIfCreated(ExecutorRegistry.FIXED);
         if (Objects.nonNull(executor)) {
             executor.shutdown();
         }
@@ -117,6 +105,7 @@ public class FixedThreadPoolUtils implements ThreadPoolUtils {
      * 立刻关闭
      */
     public void showdownNow() {
+        ThreadPoolExecutor executor = ExecutorRegistry.getIfCreated(ExecutorRegistry.FIXED);
         if (Objects.nonNull(executor)) {
             executor.shutdownNow();
         }
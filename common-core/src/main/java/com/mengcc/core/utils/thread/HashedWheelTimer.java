@@ -0,0 +1,392 @@
+package com.mengcc.core.utils.thread;
+
+import com.mengcc.core.context.ThreadContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 时间轮定时器, 适合大量的超时检测等延迟任务
+ *
+ * <p>与{@link ScheduledThreadPoolUtils}使用的堆不同, 添加和取消任务都是O(1): 添加只是放入无锁队列,
+ * 取消只是修改状态, 由时间轮线程在下一个tick把任务放入对应的槽位或从槽位的双向链表中摘除。
+ * 时间轮线程每个tick检查一个槽位, 到期的任务交给一个小的线程池执行, 因此执行时间的精度为一个tick,
+ * 任务本身也不应长时间阻塞。</p>
+ * <p>执行到期任务的线程池在首次添加任务时以定时器的名称注册到{@link ExecutorRegistry}, 可以通过{@link ExecutorRegistry#metrics(String)}查看;
+ * 同名的定时器共用这个线程池, 预先注册同名的配置可以调整它的大小。
+ * {@link ExecutorRegistry#shutdownAll(long, TimeUnit)}时先停止时间轮, 尚未到期的任务计为放弃的任务。
+ * 任务执行时使用添加任务时的{@link ThreadContext}。</p>
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+    private static final int STATE_INIT = 0;
+    private static final int STATE_STARTED = 1;
+    private static final int STATE_STOPPED = 2;
+
+    /** 每个tick最多从队列中取出的新任务数, 避免大量添加任务时时间轮线程长时间不检查到期任务 */
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private static HashedWheelTimer timer;
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final int workerThreads;
+    /** 执行到期任务的线程池, 启动时间轮线程前获取 */
+    private Executor workers;
+    private final Thread ticker;
+
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+    private final CountDownLatch startedLatch = new CountDownLatch(1);
+    private final Set<Timeout> unprocessed = Collections.synchronizedSet(new HashSet<>());
+
+    private volatile long startTime;
+    /** 当前的tick, 只由时间轮线程访问 */
+    private long tick;
+
+    /**
+     * @param name          名称, 用作时间轮线程和执行任务的线程池的名称
+     * @param tickDuration  每个tick的时长, 即任务执行时间的精度
+     * @param unit          时间单位
+     * @param ticksPerWheel 时间轮的槽位数, 向上取整为2的幂
+     * @param workerThreads 执行到期任务的线程数
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel, int workerThreads) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0 || ticksPerWheel > (1 << 30) || workerThreads <= 0) {
+            throw new IllegalArgumentException("invalid timer " + name + ": tickDuration=" + tickDuration
+                    + ", ticksPerWheel=" + ticksPerWheel + ", workerThreads=" + workerThreads);
+        }
+        this.name = Objects.requireNonNull(name);
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        size = size == 0 ? 1 : size;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.workerThreads = workerThreads;
+        this.ticker = new Thread(this::runTicker, name + "-ticker");
+        this.ticker.setDaemon(true);
+        ExecutorRegistry.addShutdownAction(this, name, deadline -> stop().size());
+    }
+
+    /**
+     * 公共的定时器: tick为100毫秒, 512个槽位, 2个执行线程
+     * @return
+     */
+    public synchronized static HashedWheelTimer getInstance() {
+        if (timer == null) {
+            timer = new HashedWheelTimer("wheel-timer", 100, TimeUnit.MILLISECONDS, 512, 2);
+        }
+        return timer;
+    }
+
+    /**
+     * 添加延迟任务, 首次添加时启动时间轮线程
+     * @param task  任务
+     * @param delay 延迟时间
+     * @param unit  时间单位
+     * @return 可以用来取消任务
+     * @throws IllegalStateException 定时器已停止
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Objects.requireNonNull(task);
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+        // 溢出保护
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        Timeout timeout = new Timeout(ThreadContext.wrap(task), deadline);
+        pendingCount.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 尚未执行也未取消的任务数
+     * @return
+     */
+    public long pendingTimeouts() {
+        return pendingCount.get();
+    }
+
+    /**
+     * 停止时间轮线程, 已经到期交给线程池的任务继续执行
+     * @return 尚未到期的任务, 不会再执行
+     */
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == ticker) {
+            throw new IllegalStateException("stop() cannot be called from a timer task");
+        }
+        ExecutorRegistry.removeShutdownAction(this);
+        if (state.getAndSet(STATE_STOPPED) != STATE_STARTED) {
+            return Collections.emptySet();
+        }
+        boolean interrupted = false;
+        while (ticker.isAlive()) {
+            ticker.interrupt();
+            try {
+                ticker.join(100);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        log.info(">> 时间轮定时器{}已停止, 未执行的任务数: {}", name, unprocessed.size());
+        return Collections.unmodifiableSet(unprocessed);
+    }
+
+    private void start() {
+        switch (state.get()) {
+            case STATE_INIT:
+                if (state.compareAndSet(STATE_INIT, STATE_STARTED)) {
+                    ExecutorRegistry.registerIfAbsent(ExecutorConfig.builder(name).coreSize(workerThreads)
+                            .maxSize(workerThreads).threadNamePrefix(name + "-worker-").daemon(true).build());
+                    workers = ExecutorRegistry.get(name);
+                    ticker.start();
+                }
+                break;
+            case STATE_STARTED:
+                break;
+            default:
+                throw new IllegalStateException("timer " + name + " has been stopped");
+        }
+        while (startTime == 0) {
+            try {
+                startedLatch.await();
+            } catch (InterruptedException e) {
+                // 启动很快, 等待启动完成后再恢复中断状态
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runTicker() {
+        long now = System.nanoTime();
+        // 0用来表示尚未启动
+        startTime = now == 0 ? 1 : now;
+        startedLatch.countDown();
+        while (state.get() == STATE_STARTED) {
+            long deadline = waitForNextTick();
+            if (deadline > 0) {
+                processCancelled();
+                transferPending();
+                wheel[(int) (tick & mask)].expire(deadline);
+                tick++;
+            }
+        }
+        for (Bucket bucket : wheel) {
+            bucket.drainTo(unprocessed);
+        }
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (!timeout.isCancelled()) {
+                unprocessed.add(timeout);
+            }
+        }
+        processCancelled();
+    }
+
+    /**
+     * 等待到下一个tick
+     * @return 相对启动时间的当前时间, 定时器停止时返回-1
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        for (;;) {
+            long current = System.nanoTime() - startTime;
+            long sleepMillis = (deadline - current + 999999) / 1000000;
+            if (sleepMillis <= 0) {
+                return current;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (state.get() == STATE_STOPPED) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的任务放到当前槽位, 本次tick执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * 延迟任务的句柄
+     */
+    public final class Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger status = new AtomicInteger(ST_INIT);
+
+        /** 以下字段只由时间轮线程访问 */
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务
+         * @return 任务已经执行或已经取消时返回false
+         */
+        public boolean cancel() {
+            if (!status.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            pendingCount.decrementAndGet();
+            // 由时间轮线程在下一个tick从槽位中摘除
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return status.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return status.get() == ST_EXPIRED;
+        }
+
+        public HashedWheelTimer timer() {
+            return HashedWheelTimer.this;
+        }
+
+        private void expire() {
+            if (!status.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            pendingCount.decrementAndGet();
+            try {
+                workers.execute(task);
+            } catch (RejectedExecutionException e) {
+                log.warn(">> 时间轮定时器{}的执行线程池拒绝了到期的任务", name, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Timeout{timer=" + name + ", task=" + task + ", status=" + status.get() + "}";
+        }
+    }
+
+    /**
+     * 时间轮的一个槽位, 双向链表, 只由时间轮线程访问
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private void drainTo(Set<Timeout> set) {
+            Timeout timeout;
+            while ((timeout = head) != null) {
+                remove(timeout);
+                if (!timeout.isCancelled() && !timeout.isExpired()) {
+                    set.add(timeout);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.mengcc.core.utils.thread;
+
+import com.mengcc.core.context.ThreadContext;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 记录运行指标的定时任务线程池, 排队等待时间为任务实际开始执行的时间与计划执行时间之差。
+ * 任务执行时使用提交线程的{@link ThreadContext}, 周期任务每次执行都使用提交时的快照
+ */
+class InstrumentedScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor {
+
+    private final ExecutorMetrics metrics;
+
+    InstrumentedScheduledThreadPoolExecutor(int corePoolSize, ThreadFactory threadFactory,
+                                            RejectedExecutionHandler handler, ExecutorMetrics metrics) {
+        super(corePoolSize, threadFactory, handler);
+        this.metrics = metrics;
+        metrics.attach(this);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return super.schedule(wrap(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return super.schedule(callable == null ? null : ThreadContext.wrap(callable), delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return super.scheduleAtFixedRate(wrap(command), initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return super.scheduleWithFixedDelay(wrap(command), initialDelay, delay, unit);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        long queueWait = r instanceof RunnableScheduledFuture
+                ? -((RunnableScheduledFuture<?>) r).getDelay(TimeUnit.NANOSECONDS) : 0L;
+        metrics.taskStarted(r, queueWait);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        metrics.taskFinished(t);
+        super.afterExecute(r, t);
+    }
+
+    private static Runnable wrap(Runnable command) {
+        return command == null ? null : ThreadContext.wrap(command);
+    }
+}
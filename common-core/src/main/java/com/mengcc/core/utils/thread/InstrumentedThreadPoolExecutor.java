@@ -0,0 +1,107 @@
+package com.mengcc.core.utils.thread;
+
+import com.mengcc.core.context.ThreadContext;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 记录运行指标的线程池, 提交的任务包装为{@link InstrumentedTask}以记录入队时间, 并带上提交线程的{@link ThreadContext}
+ */
+class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final ExecutorMetrics metrics;
+
+    InstrumentedThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                   BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory,
+                                   RejectedExecutionHandler handler, ExecutorMetrics metrics) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory,
+                handler);
+        this.metrics = metrics;
+        metrics.attach(this);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new InstrumentedTask(command, false));
+    }
+
+    /**
+     * 非阻塞地提交任务, 队列已满时不执行拒绝策略, 直接返回
+     */
+    SubmitStatus trySubmit(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        if (isShutdown()) {
+            return SubmitStatus.SHUTDOWN;
+        }
+        try {
+            super.execute(new InstrumentedTask(command, true));
+            return SubmitStatus.ACCEPTED;
+        } catch (RejectedExecutionException e) {
+            return isShutdown() ? SubmitStatus.SHUTDOWN : SubmitStatus.REJECTED;
+        }
+    }
+
+    /**
+     * 队列中保存的是包装后的任务, 按原始任务查找后再移除
+     */
+    @Override
+    public boolean remove(Runnable task) {
+        for (Runnable queued : getQueue()) {
+            if (queued == task || (queued instanceof InstrumentedTask && ((InstrumentedTask) queued).delegate == task)) {
+                return super.remove(queued);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        long queueWait = r instanceof InstrumentedTask ? System.nanoTime() - ((InstrumentedTask) r).enqueueNanos : 0L;
+        metrics.taskStarted(r, queueWait);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        metrics.taskFinished(t);
+        super.afterExecute(r, t);
+    }
+
+    /**
+     * 记录了入队时间和提交时上下文的任务
+     */
+    static final class InstrumentedTask implements Runnable {
+        final Runnable delegate;
+        final ThreadContext.Snapshot context = ThreadContext.capture();
+        final long enqueueNanos = System.nanoTime();
+        /** 队列已满时直接拒绝, 不执行拒绝策略 */
+        final boolean nonBlocking;
+
+        InstrumentedTask(Runnable delegate, boolean nonBlocking) {
+            this.delegate = delegate;
+            this.nonBlocking = nonBlocking;
+        }
+
+        @Override
+        public void run() {
+            context.run(delegate);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
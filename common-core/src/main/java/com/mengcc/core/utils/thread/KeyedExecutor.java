@@ -0,0 +1,245 @@
+package com.mengcc.core.utils.thread;
+
+import com.mengcc.core.context.ThreadContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 按key串行、不同key并行的执行器
+ *
+ * <p>同一个key的任务按提交顺序依次执行, 同一时刻最多只有一个在执行; 不同key的任务交给底层线程池并行执行。
+ * 每个key的等待队列有长度上限, 队列满时提交线程阻塞等待, 超时后拒绝, 避免单个key堆积过多任务。
+ * 队列中没有任务的key会立即移除, 内存占用只与活跃的key数量有关。</p>
+ * <p>任务中不要同步等待同一个key的其他任务, 也不要在队列已满时向同一个key提交任务, 否则只能等到超时。</p>
+ *
+ * @param <K> key的类型, 需要正确实现equals和hashCode
+ */
+@Slf4j
+public class KeyedExecutor<K> {
+
+    /** 一次调度连续执行的任务数, 超过后重新提交给线程池, 让其他key也有机会执行 */
+    private static final int BATCH_SIZE = 32;
+
+    private final Executor executor;
+
+    private final int maxQueuedPerKey;
+
+    private final long defaultTimeoutNanos;
+
+    private final Map<K, KeyQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * @param executorName    {@link ExecutorRegistry}中的线程池名称, 每次调度时按名称获取, 线程池关闭后重新创建的也能继续使用
+     * @param maxQueuedPerKey 每个key最多等待执行的任务数
+     */
+    public KeyedExecutor(String executorName, int maxQueuedPerKey) {
+        this(command -> ExecutorRegistry.get(executorName).execute(command), maxQueuedPerKey, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param executor        执行任务的线程池, 建议使用不限长度的队列, 线程池拒绝时在当前线程继续执行
+     * @param maxQueuedPerKey 每个key最多等待执行的任务数
+     * @param defaultTimeout  {@link #execute(Object, Runnable)}在队列满时的最长等待时间
+     * @param unit            时间单位
+     */
+    public KeyedExecutor(Executor executor, int maxQueuedPerKey, long defaultTimeout, TimeUnit unit) {
+        if (maxQueuedPerKey <= 0) {
+            throw new IllegalArgumentException("maxQueuedPerKey must be positive");
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.maxQueuedPerKey = maxQueuedPerKey;
+        this.defaultTimeoutNanos = unit.toNanos(defaultTimeout);
+    }
+
+    /**
+     * 提交任务, 队列满时最多等待构造时指定的时间
+     * @param key  任务的key
+     * @param task 任务
+     * @throws RejectedExecutionException 等待超时、线程被中断或线程池拒绝
+     */
+    public void execute(K key, Runnable task) {
+        if (!tryExecute(key, task, defaultTimeoutNanos, TimeUnit.NANOSECONDS)) {
+            throw new RejectedExecutionException("queue of key " + key + " is full");
+        }
+    }
+
+    /**
+     * 提交任务, 队列满时最多等待指定的时间
+     * @param key     任务的key
+     * @param task    任务
+     * @param timeout 最长等待时间, 小于等于0时不等待
+     * @param unit    时间单位
+     * @return 等待超时或线程被中断时返回false
+     * @throws RejectedExecutionException 线程池拒绝
+     */
+    public boolean tryExecute(K key, Runnable task, long timeout, TimeUnit unit) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(task);
+        KeyQueue queue = pin(key);
+        try {
+            try {
+                if (!queue.permits.tryAcquire(timeout, unit)) {
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            Runnable wrapped = ThreadContext.wrap(task);
+            boolean schedule;
+            synchronized (queue) {
+                queue.tasks.add(wrapped);
+                schedule = !queue.running;
+                queue.running = true;
+            }
+            if (schedule) {
+                try {
+                    executor.execute(queue);
+                } catch (RuntimeException e) {
+                    boolean hasOthers;
+                    synchronized (queue) {
+                        queue.tasks.remove(wrapped);
+                        // 调度失败前其他线程已经加入队列的任务不会再触发调度, 不能留在队列中
+                        hasOthers = !queue.tasks.isEmpty();
+                        queue.running = hasOthers;
+                    }
+                    queue.permits.release();
+                    if (hasOthers) {
+                        // 与调度时线程池拒绝的处理一致, 在当前线程执行其他线程已提交成功的任务
+                        queue.run();
+                    }
+                    throw e;
+                }
+            }
+            return true;
+        } finally {
+            unpin(key, queue);
+        }
+    }
+
+    /**
+     * 有任务在执行或等待执行的key的数量
+     * @return
+     */
+    public int activeKeys() {
+        return queues.size();
+    }
+
+    /**
+     * key等待执行的任务数, 不包括正在执行的任务
+     * @param key
+     * @return
+     */
+    public int queuedCount(K key) {
+        KeyQueue queue = queues.get(key);
+        return queue == null ? 0 : maxQueuedPerKey - queue.permits.availablePermits();
+    }
+
+    /**
+     * 获取key的队列并标记为使用中, 使用中的队列不会被移除
+     */
+    private KeyQueue pin(K key) {
+        return queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new KeyQueue(k);
+            }
+            queue.users++;
+            return queue;
+        });
+    }
+
+    private void unpin(K key, KeyQueue queue) {
+        queues.computeIfPresent(key, (k, current) -> {
+            if (current == queue) {
+                current.users--;
+            }
+            return current.isIdle() ? null : current;
+        });
+    }
+
+    private void removeIfIdle(K key, KeyQueue queue) {
+        queues.computeIfPresent(key, (k, current) -> current == queue && current.isIdle() ? null : current);
+    }
+
+    /**
+     * 一个key的等待队列, 同时也是提交给线程池的调度任务。
+     * 线程池被强制关闭时由{@link ExecutorRegistry#shutdownAll(long, TimeUnit)}取出其中的任务计为放弃的任务
+     */
+    final class KeyQueue implements DispatchTask {
+        private final K key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private final Semaphore permits = new Semaphore(maxQueuedPerKey);
+        /** 正在提交任务的线程数, 只在map的compute中修改 */
+        private int users;
+        /** 是否已提交给线程池, 由持有锁的线程修改 */
+        private boolean running;
+
+        private KeyQueue(K key) {
+            this.key = key;
+        }
+
+        private synchronized boolean isIdle() {
+            return users == 0 && !running && tasks.isEmpty();
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; ; i++) {
+                Runnable next;
+                synchronized (this) {
+                    next = tasks.poll();
+                    if (next == null) {
+                        running = false;
+                    }
+                }
+                if (next == null) {
+                    removeIfIdle(key, this);
+                    return;
+                }
+                permits.release();
+                try {
+                    next.run();
+                } catch (Throwable e) {
+                    log.error(">> 执行key {}的任务出错", key, e);
+                }
+                if (i + 1 >= BATCH_SIZE && hasMore()) {
+                    try {
+                        executor.execute(this);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        // 线程池拒绝时在当前线程继续执行, 保证队列中的任务不会丢失
+                        i = -1;
+                    }
+                }
+            }
+        }
+
+        private synchronized boolean hasMore() {
+            return !tasks.isEmpty();
+        }
+
+        /**
+         * 取出所有等待中的任务, 不再执行
+         */
+        synchronized List<Runnable> drainTasks() {
+            List<Runnable> drained = new ArrayList<>(tasks);
+            tasks.clear();
+            running = false;
+            permits.release(drained.size());
+            return drained;
+        }
+    }
+}
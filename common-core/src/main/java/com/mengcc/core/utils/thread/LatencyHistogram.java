@@ -0,0 +1,79 @@
+package com.mengcc.core.utils.thread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 耗时分布的直方图, 按微秒数的2的幂分桶, 记录时只做一次无锁累加, 分位数的精度为所在桶的上界
+ */
+final class LatencyHistogram {
+
+    /** 桶的数量, 最后一个桶容纳2^38微秒(约3天)以上的耗时 */
+    private static final int BUCKET_COUNT = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        long micros = TimeUnit.NANOSECONDS.toMicros(value);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    double meanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0D : totalNanos.sum() / (double) n / 1_000_000D;
+    }
+
+    double maxMillis() {
+        return maxNanos.get() / 1_000_000D;
+    }
+
+    /**
+     * @param percentile 0到100之间的百分位
+     * @return 该百分位所在桶的上界(毫秒)
+     */
+    double percentileMillis(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0D;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100D);
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min((1L << i) / 1000D, maxMillis());
+            }
+        }
+        return maxMillis();
+    }
+}
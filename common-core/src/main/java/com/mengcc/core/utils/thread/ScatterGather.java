@@ -0,0 +1,268 @@
+package com.mengcc.core.utils.thread;
+
+import com.mengcc.core.context.ContextKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 并发调用多个下游并在截止时间内汇总结果
+ *
+ * <p>调用提交到{@link ExecutorRegistry}中的命名线程池, 调用方最多等到截止时间, 按提交顺序返回每个调用的结果:
+ * 成功、失败、被拒绝或超时。超时的调用会被取消(中断执行线程)。
+ * 提交不会阻塞: 线程池的队列已满或已关闭时不执行拒绝策略(如: 阻塞等待队列空出位置), 该调用直接标记为被拒绝。</p>
+ * <p>截止时间保存在{@link ThreadContext}的{@link #DEADLINE}中, 会随上下文传递到被调用的任务里,
+ * 任务中再次并发调用时自动使用剩余的时间; 入口处可以用{@link #withDeadline(long, TimeUnit, Callable)}设置整个请求的时间预算。
+ * 嵌套的并发调用不要与外层使用同一个有界线程池, 避免外层任务占满线程后内层任务只能排队到超时。</p>
+ * <pre>
+ * List&lt;ScatterGather.Outcome&lt;Price&gt;&gt; outcomes = ScatterGather.invokeAll("price-query", calls, 200, TimeUnit.MILLISECONDS);
+ * List&lt;Price&gt; prices = ScatterGather.successValues(outcomes);
+ * </pre>
+ */
+@Slf4j
+public final class ScatterGather {
+
+    /** 截止时间, {@link System#nanoTime()}的绝对值 */
+    public static final ContextKey<Long> DEADLINE = ContextKey.of("scatter-gather.deadline");
+
+    private ScatterGather() {
+    }
+
+    /**
+     * 调用的结果状态
+     */
+    public enum Status {
+        /** 在截止时间内成功返回 */
+        SUCCESS,
+        /** 抛出异常 */
+        FAILED,
+        /** 线程池的队列已满或已关闭, 没有执行 */
+        REJECTED,
+        /** 截止时间到了还没有返回, 已取消 */
+        TIMED_OUT
+    }
+
+    /**
+     * 单个调用的结果
+     */
+    public static final class Outcome<T> {
+        private final Status status;
+        private final T value;
+        private final Throwable error;
+
+        private Outcome(Status status, T value, Throwable error) {
+            this.status = status;
+            this.value = value;
+            this.error = error;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isSuccess() {
+            return status == Status.SUCCESS;
+        }
+
+        /**
+         * @return 成功时的返回值, 其他状态为{@code null}
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return 失败时的异常, 被拒绝时为{@link RejectedExecutionException}, 其他状态为{@code null}
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return status == Status.SUCCESS ? "Outcome{SUCCESS, " + value + "}"
+                    : status == Status.TIMED_OUT ? "Outcome{TIMED_OUT}" : "Outcome{" + status + ", " + error + "}";
+        }
+    }
+
+    /**
+     * 在指定的时间预算内执行, 期间的并发调用都不会超过这个截止时间; 已有更早的截止时间时保留原来的
+     * @param timeout 时间预算
+     * @param unit    时间单位
+     * @param task    任务
+     * @return 任务的返回值
+     * @throws Exception 任务抛出的异常
+     */
+    public static <T> T withDeadline(long timeout, TimeUnit unit, Callable<T> task) throws Exception {
+        Long previous = DEADLINE.get();
+        DEADLINE.set(effectiveDeadline(System.nanoTime(), timeout, unit));
+        try {
+            return task.call();
+        } finally {
+            DEADLINE.set(previous);
+        }
+    }
+
+    /**
+     * 当前上下文剩余的时间
+     * @param unit 时间单位
+     * @return 没有截止时间时返回{@link Long#MAX_VALUE}, 已过期时返回0
+     */
+    public static long remaining(TimeUnit unit) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 使用上下文中的截止时间并发调用, 没有截止时间时等待所有调用返回
+     * @param executorName {@link ExecutorRegistry}中的线程池名称
+     * @param calls        调用
+     * @return 按调用顺序排列的结果
+     */
+    public static <T> List<Outcome<T>> invokeAll(String executorName, List<? extends Callable<T>> calls) {
+        return invokeAll(executorName, calls, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 并发调用, 最多等待指定的时间; 上下文中已有更早的截止时间时以上下文的为准
+     * @param executorName {@link ExecutorRegistry}中的线程池名称
+     * @param calls        调用
+     * @param timeout      最长等待时间
+     * @param unit         时间单位
+     * @return 按调用顺序排列的结果
+     */
+    public static <T> List<Outcome<T>> invokeAll(String executorName, List<? extends Callable<T>> calls,
+                                                 long timeout, TimeUnit unit) {
+        Objects.requireNonNull(calls);
+        ThreadPoolExecutor executor = ExecutorRegistry.get(executorName);
+        long start = System.nanoTime();
+        Long previous = DEADLINE.get();
+        long deadline = effectiveDeadline(start, timeout, unit);
+
+        List<Future<T>> futures = new ArrayList<>(calls.size());
+        List<SubmitStatus> statuses = new ArrayList<>(calls.size());
+        List<Outcome<T>> outcomes = new ArrayList<>(calls.size());
+        // 提交期间把截止时间放进上下文, 随快照传递给每个调用
+        DEADLINE.set(deadline == Long.MAX_VALUE ? null : deadline);
+        try {
+            for (Callable<T> call : calls) {
+                if (deadline != Long.MAX_VALUE && deadline - System.nanoTime() <= 0) {
+                    futures.add(null);
+                    statuses.add(null);
+                    continue;
+                }
+                FutureTask<T> future = new FutureTask<>(call);
+                SubmitStatus status = ExecutorRegistry.trySubmit(executorName, future);
+                futures.add(status == SubmitStatus.ACCEPTED ? future : null);
+                statuses.add(status);
+            }
+        } finally {
+            DEADLINE.set(previous);
+        }
+
+        boolean interrupted = false;
+        int timedOut = 0;
+        int rejected = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<T> future = futures.get(i);
+            SubmitStatus status = statuses.get(i);
+            if (status == null) {
+                // 提交前已经到了截止时间
+                outcomes.add(new Outcome<>(Status.TIMED_OUT, null, null));
+                timedOut++;
+                continue;
+            } else if (status != SubmitStatus.ACCEPTED) {
+                outcomes.add(new Outcome<>(Status.REJECTED, null, new RejectedExecutionException(
+                        "executor " + executorName + (status == SubmitStatus.SHUTDOWN ? " has been shut down" : " is full"))));
+                rejected++;
+                continue;
+            }
+            try {
+                T value;
+                if (interrupted) {
+                    throw new InterruptedException();
+                } else if (deadline == Long.MAX_VALUE) {
+                    value = future.get();
+                } else {
+                    value = future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+                outcomes.add(new Outcome<>(Status.SUCCESS, value, null));
+            } catch (TimeoutException | CancellationException e) {
+                cancel(executor, future);
+                outcomes.add(new Outcome<>(Status.TIMED_OUT, null, null));
+                timedOut++;
+            } catch (ExecutionException e) {
+                outcomes.add(new Outcome<>(Status.FAILED, null, e.getCause()));
+            } catch (InterruptedException e) {
+                // 调用方被中断时取消所有未完成的调用
+                interrupted = true;
+                cancel(executor, future);
+                outcomes.add(new Outcome<>(Status.FAILED, null, e));
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (timedOut > 0 || rejected > 0) {
+            log.warn(">> 线程池{}的{}个调用中有{}个超时, {}个被拒绝, 耗时{}ms", executorName, calls.size(), timedOut,
+                    rejected, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return outcomes;
+    }
+
+    /**
+     * 成功的调用的返回值, 按调用顺序排列
+     * @param outcomes
+     * @return
+     */
+    public static <T> List<T> successValues(List<Outcome<T>> outcomes) {
+        return outcomes.stream().filter(Outcome::isSuccess).map(Outcome::getValue).collect(Collectors.toList());
+    }
+
+    /**
+     * 取消调用, 还在排队的同时从队列中移除, 不占用队列容量
+     */
+    private static void cancel(ThreadPoolExecutor executor, Future<?> future) {
+        if (future.cancel(true) && future instanceof Runnable) {
+            executor.remove((Runnable) future);
+        }
+    }
+
+    /**
+     * 取指定时间预算和上下文中截止时间较早的一个
+     * @return 都没有限制时返回{@link Long#MAX_VALUE}
+     */
+    private static long effectiveDeadline(long now, long timeout, TimeUnit unit) {
+        long deadline = Long.MAX_VALUE;
+        long nanos = unit.toNanos(timeout);
+        if (nanos != Long.MAX_VALUE) {
+            deadline = now + Math.max(0L, nanos);
+            // 溢出保护
+            if (deadline == Long.MAX_VALUE || deadline - now < 0) {
+                deadline = Long.MAX_VALUE - 1;
+            }
+        }
+        Long inherited = DEADLINE.get();
+        if (inherited != null && (deadline == Long.MAX_VALUE || inherited - deadline < 0)) {
+            deadline = inherited;
+        }
+        return deadline;
+    }
+}
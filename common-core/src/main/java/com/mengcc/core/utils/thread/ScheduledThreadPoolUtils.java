@@ -1,7 +1,6 @@
 package com.mengcc.core.utils.thread;
 
-import org.apache.poi.ss.formula.functions.T;
-
+import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -10,17 +9,10 @@ import java.util.concurrent.ThreadPoolExecutor;
 /**
  * @author zhouzq
  * @date 2019/8/13
- * @desc 定时任务线程池
+ * @desc 定时任务线程池, 使用{@link ExecutorRegistry#SCHEDULED}线程池
  */
 public class ScheduledThreadPoolUtils implements ThreadPoolUtils {
 
-    /**
-     *  线程池的对象
-     */
-    private ThreadPoolExecutor executor;
-
-    private int nThread = 10;
-
     private ScheduledThreadPoolUtils() {
     }
 
@@ -36,27 +28,21 @@ public class ScheduledThreadPoolUtils implements ThreadPoolUtils {
         return threadPool;
     }
 
+    /**
+     * 线程池的对象, 由注册表保证只创建一次
+     */
+    private ScheduledThreadPoolExecutor executor() {
+        return ExecutorRegistry.getScheduled(ExecutorRegistry.SCHEDULED);
+    }
+
     /**
      * 开启一个无返回结果的线程
      * @param r
      */
     @Override
     public void execute(Runnable r) {
-        if (executor == null) {
-            /**
-             * corePoolSize:核心线程数
-             * maximumPoolSize：线程池所容纳最大线程数(workQueue队列满了之后才开启)
-             * keepAliveTime：非核心线程闲置时间超时时长
-             * unit：keepAliveTime的单位
-             * workQueue：等待队列，存储还未执行的任务
-             * threadFactory：线程创建的工厂
-             * handler：异常处理机制
-             *
-             */
-            executor = new ScheduledThreadPoolExecutor(nThread);
-        }
         // 把一个任务丢到了线程池中
-        executor.execute(r);
+        executor().execute(r);
     }
 
     /**
@@ -65,22 +51,9 @@ public class ScheduledThreadPoolUtils implements ThreadPoolUtils {
      * @return
      */
     @Override
-    public Future<T> submit(Callable<T> r) {
-        if (executor == null) {
-            /**
-             * corePoolSize:核心线程数
-             * maximumPoolSize：线程池所容纳最大线程数(workQueue队列满了之后才开启)
-             * keepAliveTime：非核心线程闲置时间超时时长
-             * unit：keepAliveTime的单位
-             * workQueue：等待队列，存储还未执行的任务
-             * threadFactory：线程创建的工厂
-             * handler：异常处理机制
-             *
-             */
-            executor = new ScheduledThreadPoolExecutor(nThread);
-        }
+    public <T> Future<T> submit(Callable<T> r) {
         // 把一个任务丢到了线程池中
-        return executor.submit(r);
+        return executor().submit(r);
     }
 
     /**
@@ -90,7 +63,27 @@ public class ScheduledThreadPoolUtils implements ThreadPoolUtils {
     @Override
     public void cancel(Runnable r) {
         if (r != null) {
-            executor.getQueue().remove(r);
+            executor().remove(r);
+        }
+    }
+
+    /**
+     * 执行完任务关闭
+     */
+    public void shutdown() {
+        ThreadPoolExecutor executor = ExecutorRegistry.getIfCreated(ExecutorRegistry.SCHEDULED);
+        if (Objects.nonNull(executor)) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 立刻关闭
+     */
+    public void showdownNow() {
+        ThreadPoolExecutor executor = ExecutorRegistry.getIfCreated(ExecutorRegistry.SCHEDULED);
+        if (Objects.nonNull(executor)) {
+            executor.shutdownNow();
         }
     }
 }
@@ -0,0 +1,81 @@
+package com.mengcc.core.utils.thread;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc {@link ExecutorRegistry#shutdownAll(long, java.util.concurrent.TimeUnit)}的结果: 时间预算内没有处理完而被放弃的任务
+ */
+public final class ShutdownReport {
+
+    private final long elapsedMillis;
+    private final Map<String, List<Runnable>> abandonedTasks;
+    private final Map<String, Integer> abandonedCounts;
+    private final Map<String, Integer> interruptedCounts;
+    private final Map<String, Throwable> errors;
+
+    ShutdownReport(long elapsedMillis, Map<String, List<Runnable>> abandonedTasks, Map<String, Integer> abandonedCounts,
+                   Map<String, Integer> interruptedCounts, Map<String, Throwable> errors) {
+        this.elapsedMillis = elapsedMillis;
+        this.abandonedTasks = Collections.unmodifiableMap(new LinkedHashMap<>(abandonedTasks));
+        this.abandonedCounts = Collections.unmodifiableMap(new LinkedHashMap<>(abandonedCounts));
+        this.interruptedCounts = Collections.unmodifiableMap(new LinkedHashMap<>(interruptedCounts));
+        this.errors = Collections.unmodifiableMap(new LinkedHashMap<>(errors));
+    }
+
+    /**
+     * @return 关闭的耗时(毫秒)
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 超过时间预算后仍在队列中而被移除的任务
+     * @return 线程池名称 -> 任务, 已解开线程池内部的包装, submit提交的任务为对应的{@link java.util.concurrent.Future}
+     */
+    public Map<String, List<Runnable>> getAbandonedTasks() {
+        return abandonedTasks;
+    }
+
+    /**
+     * 放弃的任务数, 包括线程池队列中的任务和组件(如: {@link HashedWheelTimer}中尚未到期的任务)放弃的任务
+     * @return 线程池或组件的名称 -> 任务数
+     */
+    public Map<String, Integer> getAbandonedCounts() {
+        return abandonedCounts;
+    }
+
+    /**
+     * 超过时间预算后仍在执行而被中断的任务数
+     * @return 线程池名称 -> 任务数
+     */
+    public Map<String, Integer> getInterruptedCounts() {
+        return interruptedCounts;
+    }
+
+    /**
+     * 关闭组件时抛出的异常
+     * @return 组件的名称 -> 异常
+     */
+    public Map<String, Throwable> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return 所有任务都在时间预算内处理完, 且没有出现异常
+     */
+    public boolean isClean() {
+        return abandonedCounts.isEmpty() && interruptedCounts.isEmpty() && errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ShutdownReport{elapsedMillis=" + elapsedMillis + ", abandoned=" + abandonedCounts
+                + ", interrupted=" + interruptedCounts + ", errors=" + errors.keySet() + "}";
+    }
+}
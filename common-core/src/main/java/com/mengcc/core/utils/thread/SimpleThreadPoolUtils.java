@@ -1,37 +1,19 @@
 package com.mengcc.core.utils.thread;
 
-import org.apache.poi.ss.formula.functions.T;
-
-import java.util.concurrent.*;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author zhouzq
  * @date 2019/8/13
- * @desc 线程池工具类(根据cpu设置连接池的大小)
+ * @desc 线程池工具类(根据cpu设置连接池的大小), 使用{@link ExecutorRegistry#SIMPLE}线程池:
+ * 核心线程数 = CPU核心数 + 1, 最大线程数 = CPU核心数 * 2 + 1, 非核心线程闲置1s后回收,
+ * 队列最多20个任务, 队列满时提交线程最多等待1秒
  */
 public class SimpleThreadPoolUtils implements ThreadPoolUtils{
 
-    /**
-     * 根据cpu的数量动态的配置核心线程数和最大线程数
-     */
-    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
-    /**
-     * 核心线程数 = CPU核心数 + 1
-     */
-    private static final int CORE_POOL_SIZE  = CPU_COUNT + 1;
-    /**
-     * 线程池最大线程数 = CPU核心数 * 2 + 1
-     */
-    private static final int MAXIMUM_POOL_SIZE = CPU_COUNT * 2 + 1;
-    /**
-     * 非核心线程闲置时超时1s
-     */
-    private static final int KEEP_ALIVE = 1;
-    /**
-     *  线程池的对象
-     */
-    private ThreadPoolExecutor executor;
-
     private SimpleThreadPoolUtils() {
     }
 
@@ -44,29 +26,21 @@ public class SimpleThreadPoolUtils implements ThreadPoolUtils{
         return threadPool;
     }
 
+    /**
+     * 线程池的对象, 由注册表保证只创建一次
+     */
+    private ThreadPoolExecutor executor() {
+        return ExecutorRegistry.get(ExecutorRegistry.SIMPLE);
+    }
+
     /**
      * 开启一个无返回结果的线程
      * @param r
      */
     @Override
     public void execute(Runnable r) {
-        if (executor == null) {
-            /**
-             * corePoolSize:核心线程数
-             * maximumPoolSize：线程池所容纳最大线程数(workQueue队列满了之后才开启)
-             * keepAliveTime：非核心线程闲置时间超时时长
-             * unit：keepAliveTime的单位
-             * workQueue：等待队列，存储还未执行的任务
-             * threadFactory：线程创建的工厂
-             * handler：异常处理机制
-             *
-             */
-            executor = new ThreadPoolExecutor(CORE_POOL_SIZE, MAXIMUM_POOL_SIZE,
-                    KEEP_ALIVE, TimeUnit.SECONDS, new ArrayBlockingQueue<>(20),
-                    Executors.defaultThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
-        }
         // 把一个任务丢到了线程池中
-        executor.execute(r);
+        executor().execute(r);
     }
 
     /**
@@ -75,24 +49,27 @@ public class SimpleThreadPoolUtils implements ThreadPoolUtils{
      * @return
      */
     @Override
-    public Future<T> submit(Callable<T> r) {
-        if (executor == null) {
-            /**
-             * corePoolSize:核心线程数
-             * maximumPoolSize：线程池所容纳最大线程数(workQueue队列满了之后才开启)
-             * keepAliveTime：非核心线程闲置时间超时时长
-             * unit：keepAliveTime的单位
-             * workQueue：等待队列，存储还未执行的任务
-             * threadFactory：线程创建的工厂
-             * handler：异常处理机制
-             *
-             */
-            executor = new ThreadPoolExecutor(CORE_POOL_SIZE, MAXIMUM_POOL_SIZE,
-                    KEEP_ALIVE, TimeUnit.SECONDS, new ArrayBlockingQueue<>(20),
-                    Executors.defaultThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
-        }
+    public <T> Future<T> submit(Callable<T> r) {
         // 把一个任务丢到了线程池中
-        return executor.submit(r);
+        return executor().submit(r);
+    }
+
+    /**
+     * 非阻塞地提交任务, 队列已满时直接返回{@link SubmitStatus#REJECTED}
+     * @param r
+     * @return
+     */
+    @Override
+    public SubmitStatus trySubmit(Runnable r) {
+        return ExecutorRegistry.trySubmit(ExecutorRegistry.SIMPLE, r);
+    }
+
+    /**
+     * 队列使用率是否达到过载阈值, 可以在提交非必要的任务前检查
+     * @return
+     */
+    public boolean isOverloaded() {
+        return ExecutorRegistry.isOverloaded(ExecutorRegistry.SIMPLE);
     }
 
     /**
@@ -102,7 +79,27 @@ public class SimpleThreadPoolUtils implements ThreadPoolUtils{
     @Override
     public void cancel(Runnable r) {
         if (r != null) {
-            executor.getQueue().remove(r);
+            executor().remove(r);
+        }
+    }
+
+    /**
+     * 执行完任务关闭
+     */
+    public void shutdown() {
+        ThreadPoolExecutor executor = ExecutorRegistry.getIfCreated(ExecutorRegistry.SIMPLE);
+        if (Objects.nonNull(executor)) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 立刻关闭
+     */
+    public void showdownNow() {
+        ThreadPoolExecutor executor = ExecutorRegistry.getIfCreated(ExecutorRegistry.SIMPLE);
+        if (Objects.nonNull(executor)) {
+            executor.shutdownNow();
         }
     }
 }
@@ -0,0 +1,15 @@
+package com.mengcc.core.utils.thread;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 非阻塞提交任务的结果, 见{@link ThreadPoolUtils#trySubmit(Runnable)}
+ */
+public enum SubmitStatus {
+    /** 已放入线程池 */
+    ACCEPTED,
+    /** 没有空闲线程且队列已满, 任务没有执行 */
+    REJECTED,
+    /** 线程池已关闭, 任务没有执行 */
+    SHUTDOWN
+}
@@ -1,9 +1,8 @@
 package com.mengcc.core.utils.thread;
 
-import org.apache.poi.ss.formula.functions.T;
-
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author zhouzq
@@ -14,7 +13,22 @@ public interface ThreadPoolUtils {
 
     void execute(Runnable r);
 
-    Future<T> submit(Callable<T> r);
+    <T> Future<T> submit(Callable<T> r);
 
     void cancel(Runnable r);
+
+    /**
+     * 非阻塞地提交任务, 线程池繁忙时直接返回而不是等待或抛出异常
+     * <p>默认实现调用{@link #execute(Runnable)}, 是否阻塞取决于具体的线程池</p>
+     * @param r
+     * @return 提交结果
+     */
+    default SubmitStatus trySubmit(Runnable r) {
+        try {
+            execute(r);
+            return SubmitStatus.ACCEPTED;
+        } catch (RejectedExecutionException e) {
+            return SubmitStatus.REJECTED;
+        }
+    }
 }
@@ -0,0 +1,250 @@
+package com.mengcc.core.utils.thread;
+
+import com.mengcc.core.context.ThreadContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 每个任务一个线程的线程池, 适合大量阻塞在http、redis调用上的任务
+ *
+ * <p>jdk 21及以上使用虚拟线程, 阻塞的任务不再占用平台线程; java 8下退化为线程数等于最大并发数的平台线程池。
+ * 同时运行的任务数由信号量限制, 超出的任务等待许可, 避免把下游打满。不同的下游可以通过
+ * {@link #newLimited(String, int)}各自创建并发上限。</p>
+ * <p>未关闭的线程池在{@link ExecutorRegistry#shutdownAll(long, TimeUnit)}时在时间预算内等待任务结束,
+ * 超时后中断, 还在等待许可的任务计为放弃的任务。</p>
+ */
+@Slf4j
+public class VirtualThreadPoolUtils implements ThreadPoolUtils {
+
+    /** {@link #getInstance()}默认的最大并发数 */
+    public static final int DEFAULT_MAX_CONCURRENCY = 1000;
+
+    private static VirtualThreadPoolUtils threadPool;
+
+    private final int maxConcurrency;
+
+    private final Semaphore permits;
+
+    private final String name;
+
+    private final ExecutorService executor;
+
+    /** 还在等待许可的任务, 用于取消 */
+    private final Map<Runnable, WaitingTask> waiting = new ConcurrentHashMap<>();
+
+    private final AtomicInteger taskCount = new AtomicInteger();
+
+    private VirtualThreadPoolUtils(String name, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        this.executor = VirtualThreads.newThreadPerTaskExecutor(name + "-virtual-", maxConcurrency);
+        ExecutorRegistry.addShutdownAction(this, name, this::drain);
+        log.info(">> 创建线程池: name={}, maxConcurrency={}, virtual={}", name, maxConcurrency, VirtualThreads.isVirtual());
+    }
+
+    /**
+     * 公共的线程池, 最大并发数为{@link #DEFAULT_MAX_CONCURRENCY}
+     * @return
+     */
+    public synchronized static VirtualThreadPoolUtils getInstance() {
+        if (threadPool == null) {
+            threadPool = new VirtualThreadPoolUtils("virtual", DEFAULT_MAX_CONCURRENCY);
+        }
+        return threadPool;
+    }
+
+    /**
+     * 创建独立并发上限的线程池, 用于限制对某个下游的并发调用
+     * @param name           名称, 用作线程名称前缀
+     * @param maxConcurrency 最大并发数
+     * @return
+     */
+    public static VirtualThreadPoolUtils newLimited(String name, int maxConcurrency) {
+        return new VirtualThreadPoolUtils(name, maxConcurrency);
+    }
+
+    /**
+     * @return 当前运行时是否使用虚拟线程
+     */
+    public static boolean isVirtual() {
+        return VirtualThreads.isVirtual();
+    }
+
+    /**
+     * 开启一个无返回结果的线程
+     * @param r
+     */
+    @Override
+    public void execute(Runnable r) {
+        Objects.requireNonNull(r);
+        WaitingTask task = new WaitingTask(r);
+        waiting.put(r, task);
+        taskCount.incrementAndGet();
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            waiting.remove(r, task);
+            taskCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 开启一个有返回结果的线程, 通过{@link Future#cancel(boolean)}取消
+     * @param r
+     * @return
+     */
+    @Override
+    public <T> Future<T> submit(Callable<T> r) {
+        Objects.requireNonNull(r);
+        Callable<T> task = ThreadContext.wrap(r);
+        taskCount.incrementAndGet();
+        try {
+            return executor.submit(() -> {
+                try {
+                    permits.acquire();
+                    try {
+                        return task.call();
+                    } finally {
+                        permits.release();
+                    }
+                } finally {
+                    taskCount.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            taskCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 取消还在等待许可的任务
+     * @param r
+     */
+    @Override
+    public void cancel(Runnable r) {
+        if (r != null) {
+            WaitingTask task = waiting.remove(r);
+            if (task != null) {
+                task.cancelled = true;
+            }
+        }
+    }
+
+    /**
+     * 获取任务数量, 包括正在执行和等待许可的任务
+     * @return
+     */
+    public int taskSize() {
+        return taskCount.get();
+    }
+
+    /**
+     * 正在执行的任务数量
+     * @return
+     */
+    public int activeCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 执行完任务关闭
+     */
+    public void shutdown() {
+        ExecutorRegistry.removeShutdownAction(this);
+        executor.shutdown();
+    }
+
+    /**
+     * 立刻关闭
+     */
+    public void showdownNow() {
+        ExecutorRegistry.removeShutdownAction(this);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 关闭并等待任务结束, 到截止时间后中断
+     * @param deadlineNanos 截止时间
+     * @return 还在等待许可而不会执行的任务数
+     */
+    private int drain(long deadlineNanos) throws InterruptedException {
+        synchronized (VirtualThreadPoolUtils.class) {
+            if (threadPool == this) {
+                // 之后getInstance()重新创建
+                threadPool = null;
+            }
+        }
+        executor.shutdown();
+        if (executor.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            return 0;
+        }
+        int active = activeCount();
+        int abandoned = Math.max(0, taskCount.get() - active);
+        executor.shutdownNow();
+        log.warn(">> 线程池{}未在时间预算内结束, 中断了{}个正在执行的任务", name, active);
+        return abandoned;
+    }
+
+    /**
+     * 等待许可的任务, 取得许可后未被取消才执行
+     */
+    private final class WaitingTask implements Runnable {
+        private final Runnable delegate;
+        private final ThreadContext.Snapshot context = ThreadContext.capture();
+        private volatile boolean cancelled;
+
+        private WaitingTask(Runnable delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!acquire()) {
+                    return;
+                }
+                try {
+                    if (!cancelled) {
+                        context.run(delegate);
+                    }
+                } finally {
+                    permits.release();
+                }
+            } finally {
+                waiting.remove(delegate, this);
+                taskCount.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            permits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.mengcc.core.utils.thread;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 每个任务一个线程的执行器, 供{@link VirtualThreadPoolUtils}使用
+ *
+ * <p>这是java 8的实现, 使用平台线程: 线程数上限为最大并发数, 超出的任务排队, 闲置60秒后回收线程。
+ * jdk 21及以上运行时会加载multi-release jar中META-INF/versions/21下的同名类, 改为每个任务一个虚拟线程。</p>
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return 当前运行时是否使用虚拟线程
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * @param namePrefix     线程名称前缀
+     * @param maxConcurrency 最大并发数, 平台线程的数量不超过该值
+     * @return
+     */
+    static ExecutorService newThreadPerTaskExecutor(String namePrefix, int maxConcurrency) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new BasicThreadFactory.Builder().namingPattern(namePrefix + "%d").daemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,34 @@
+package com.mengcc.core.utils.thread;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc 每个任务一个线程的执行器, 供{@link VirtualThreadPoolUtils}使用
+ *
+ * <p>jdk 21的实现, 打包在multi-release jar的META-INF/versions/21下: 每个任务启动一个虚拟线程,
+ * 并发数由{@link VirtualThreadPoolUtils}的信号量限制。</p>
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return 当前运行时是否使用虚拟线程
+     */
+    static boolean isVirtual() {
+        return true;
+    }
+
+    /**
+     * @param namePrefix     线程名称前缀
+     * @param maxConcurrency 最大并发数, 虚拟线程不需要按它限制线程数量
+     * @return
+     */
+    static ExecutorService newThreadPerTaskExecutor(String namePrefix, int maxConcurrency) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 1).factory());
+    }
+}
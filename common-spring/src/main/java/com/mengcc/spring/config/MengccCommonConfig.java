@@ -2,7 +2,9 @@ package com.mengcc.spring.config;
 
 import com.mengcc.core.utils.SpringContextUtils;
 import com.mengcc.spring.handle.ApiExceptionHandle;
+import com.mengcc.spring.lifecycle.ExecutorShutdownLifecycle;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,4 +34,13 @@ public class MengccCommonConfig {
         return new ApiExceptionHandle();
     }
 
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ExecutorShutdownLifecycle executorShutdownLifecycle(
+            @Value("${mengcc.executor.shutdown-timeout-millis:30000}") long timeoutMillis) {
+        log.debug(">> 配置容器关闭时关闭线程池, 时间预算: {}ms", timeoutMillis);
+        return new ExecutorShutdownLifecycle(timeoutMillis);
+    }
+
 }
@@ -0,0 +1,53 @@
+package com.mengcc.spring.lifecycle;
+
+import com.mengcc.core.utils.thread.ExecutorRegistry;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhouzq
+ * @date 2026/10/19
+ * @desc Spring容器关闭时关闭{@link ExecutorRegistry}中的线程池
+ *
+ * <p>启动时移除注册表自己的JVM退出钩子, 改为在容器关闭时调用{@link ExecutorRegistry#shutdownAll(long, TimeUnit)},
+ * 保证线程池中剩余的任务在数据源、redis连接等bean销毁之前处理完。阶段为最小值, 在其他生命周期组件(如: 消息监听)停止之后才关闭。
+ * 容器关闭之后再获取的线程池使用守护线程, 注册表会恢复JVM退出钩子来关闭它们。</p>
+ */
+public class ExecutorShutdownLifecycle implements SmartLifecycle {
+
+    private final long timeoutMillis;
+
+    private volatile boolean running = false;
+
+    /**
+     * @param timeoutMillis 关闭线程池的时间预算(毫秒)
+     */
+    public ExecutorShutdownLifecycle(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void start() {
+        ExecutorRegistry.removeShutdownHook();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (running) {
+            running = false;
+            ExecutorRegistry.shutdownAll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+}